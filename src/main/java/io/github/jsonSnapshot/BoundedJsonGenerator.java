@@ -0,0 +1,170 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+
+/**
+ * Enforces {@link SnapshotConfig#getMaxSnapshotBytes()}, {@link
+ * SnapshotConfig#getMaxSnapshotDepth()} and {@link SnapshotConfig#getMaxSnapshotCollectionSize()}
+ * while serializing, so that an accidentally snapshotted object graph fails fast with the JSON
+ * pointer of the offending value instead of filling the heap. Limits of 0 or less are not checked.
+ */
+class BoundedJsonGenerator extends FilteringJsonGenerator {
+
+  /** Counts the UTF-8 bytes the generator has flushed to the underlying writer. */
+  static class CountingWriter extends Writer {
+
+    private final Writer out;
+
+    private long bytes;
+
+    CountingWriter(Writer out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      for (int i = offset; i < offset + length; i++) {
+        char c = buffer[i];
+        bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+      }
+      out.write(buffer, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /**
+   * The limits of one snapshot and the state shared by the filters of all its levels. The writer
+   * is only read, and may be {@code null}, without a byte limit.
+   */
+  private static class Limits {
+
+    private final CountingWriter writer;
+
+    private final long maxBytes;
+
+    private final int maxDepth;
+
+    private final int maxCollectionSize;
+
+    private BoundedJsonGenerator generator;
+
+    private int depth;
+
+    Limits(CountingWriter writer, long maxBytes, int maxDepth, int maxCollectionSize) {
+      this.writer = writer;
+      this.maxBytes = maxBytes;
+      this.maxDepth = maxDepth;
+      this.maxCollectionSize = maxCollectionSize;
+    }
+
+    private void checkBytes() {
+      if (maxBytes > 0 && writer.bytes + generator.getDelegate().getOutputBuffered() > maxBytes) {
+        throw limitExceeded("exceeds " + maxBytes + " bytes of output", generator.nextValuePath());
+      }
+    }
+
+    private TokenFilter enter() {
+      checkBytes();
+      if (++depth > maxDepth && maxDepth > 0) {
+        throw limitExceeded(
+            "is nested deeper than " + maxDepth + " levels", generator.nextValuePath());
+      }
+      return new Level(this);
+    }
+  }
+
+  /** Checks the values of the root or of one array or object. */
+  private static class Level extends TokenFilter {
+
+    private final Limits limits;
+
+    private int entries;
+
+    Level(Limits limits) {
+      this.limits = limits;
+    }
+
+    @Override
+    public TokenFilter filterStartObject() {
+      return limits.enter();
+    }
+
+    @Override
+    public TokenFilter filterStartArray() {
+      return limits.enter();
+    }
+
+    @Override
+    public void filterFinishObject() {
+      limits.depth--;
+    }
+
+    @Override
+    public void filterFinishArray() {
+      limits.depth--;
+    }
+
+    @Override
+    public TokenFilter includeProperty(String name) {
+      if (limits.maxCollectionSize > 0 && ++entries > limits.maxCollectionSize) {
+        throw limitExceeded(
+            "has more than " + limits.maxCollectionSize + " entries",
+            limits.generator.parentPath());
+      }
+      return this;
+    }
+
+    @Override
+    public TokenFilter includeElement(int index) {
+      if (limits.maxCollectionSize > 0 && index >= limits.maxCollectionSize) {
+        throw limitExceeded(
+            "has more than " + limits.maxCollectionSize + " elements",
+            limits.generator.parentPath());
+      }
+      return this;
+    }
+
+    @Override
+    protected boolean _includeScalar() {
+      limits.checkBytes();
+      return true;
+    }
+  }
+
+  BoundedJsonGenerator(
+      JsonGenerator delegate,
+      CountingWriter writer,
+      long maxBytes,
+      int maxDepth,
+      int maxCollectionSize) {
+    this(delegate, new Limits(writer, maxBytes, maxDepth, maxCollectionSize));
+  }
+
+  private BoundedJsonGenerator(JsonGenerator delegate, Limits limits) {
+    super(delegate, new Level(limits));
+    limits.generator = this;
+  }
+
+  private static SnapshotMatchException limitExceeded(String problem, String path) {
+    return new SnapshotMatchException(
+        "Snapshot value at '"
+            + path
+            + "' "
+            + problem
+            + ". Snapshot a smaller part of the object graph, mask it or raise the limit in the"
+            + " SnapshotConfig");
+  }
+}
@@ -0,0 +1,139 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+
+import lombok.Value;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Serializes the parts of a snapshot whose order or spelling is not stable the same way on every
+ * run, see {@link SnapshotConfig#isCanonicalSnapshots()}: elements of sets without a defined
+ * iteration order are sorted by their own canonical JSON, and numbers are written in their shortest
+ * form, e.g. {@code 1.0} and {@code 1.00} as {@code 1}.
+ */
+class CanonicalJsonModule extends SimpleModule {
+
+  private static final JsonFactory COMPACT = new JsonFactory();
+
+  CanonicalJsonModule() {
+    super("CanonicalSnapshots");
+    addSerializer(Double.class, new NumberSerializer<>(Double.class));
+    addSerializer(Double.TYPE, new NumberSerializer<>(Double.TYPE));
+    addSerializer(Float.class, new NumberSerializer<>(Float.class));
+    addSerializer(Float.TYPE, new NumberSerializer<>(Float.TYPE));
+    addSerializer(BigDecimal.class, new NumberSerializer<>(BigDecimal.class));
+    setSerializerModifier(
+        new BeanSerializerModifier() {
+          @Override
+          public JsonSerializer<?> modifyCollectionSerializer(
+              SerializationConfig config,
+              CollectionType valueType,
+              BeanDescription beanDesc,
+              JsonSerializer<?> serializer) {
+            Class<?> type = valueType.getRawClass();
+            if (Set.class.isAssignableFrom(type)
+                && !SortedSet.class.isAssignableFrom(type)
+                && !LinkedHashSet.class.isAssignableFrom(type)) {
+              return new SortedElementsSerializer(valueType.getRawClass());
+            }
+            return serializer;
+          }
+        });
+  }
+
+  /** Writes the elements, each rendered to a token buffer once, ordered by their compact JSON. */
+  private static class SortedElementsSerializer extends StdSerializer<Collection<?>> {
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    SortedElementsSerializer(Class<?> type) {
+      super((Class) type);
+    }
+
+    @Override
+    public void serialize(Collection<?> value, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      List<Element> elements = new ArrayList<>(value.size());
+      for (Object element : value) {
+        TokenBuffer buffer = new TokenBuffer(null, false);
+        provider.defaultSerializeValue(element, buffer);
+        StringWriter compact = new StringWriter();
+        try (JsonGenerator compactGenerator = COMPACT.createGenerator(compact)) {
+          buffer.serialize(compactGenerator);
+        }
+        elements.add(new Element(compact.toString(), buffer));
+      }
+      elements.sort((a, b) -> a.getCompact().compareTo(b.getCompact()));
+
+      gen.writeStartArray(value.size());
+      for (Element element : elements) {
+        element.getBuffer().serialize(gen);
+      }
+      gen.writeEndArray();
+    }
+
+    @Override
+    public boolean isEmpty(SerializerProvider provider, Collection<?> value) {
+      return value.isEmpty();
+    }
+  }
+
+  @Value
+  private static class Element {
+    private final String compact;
+    private final TokenBuffer buffer;
+  }
+
+  /** Writes integral values without fraction and other values without trailing zeros. */
+  private static class NumberSerializer<T extends Number> extends StdSerializer<T> {
+
+    NumberSerializer(Class<T> type) {
+      super(type);
+    }
+
+    @Override
+    public void serialize(T value, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      if (value instanceof BigDecimal) {
+        writeDecimal((BigDecimal) value, gen);
+        return;
+      }
+      double number = value.doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number)) {
+        gen.writeNumber(number);
+      } else if (value instanceof Float) {
+        // via the shortest decimal of the float, not of the widened double
+        writeDecimal(new BigDecimal(Float.toString(value.floatValue())), gen);
+      } else {
+        writeDecimal(BigDecimal.valueOf(number), gen);
+      }
+    }
+
+    private static void writeDecimal(BigDecimal value, JsonGenerator gen) throws IOException {
+      BigDecimal stripped = value.signum() == 0 ? BigDecimal.ZERO : value.stripTrailingZeros();
+      if (stripped.scale() <= 0) {
+        gen.writeNumber(stripped.toBigIntegerExact());
+      } else {
+        gen.writeNumber(stripped.toPlainString());
+      }
+    }
+  }
+}
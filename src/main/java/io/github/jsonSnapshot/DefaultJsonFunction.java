@@ -0,0 +1,98 @@
+package io.github.jsonSnapshot;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.function.Function;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The default serialization of snapshots, see {@link SnapshotMatcher#start(SnapshotConfig)}. The
+ * {@code expect} arguments are written through a generator enforcing the size limits of the config
+ * and applying its masking rules.
+ */
+class DefaultJsonFunction implements Function<Object, String> {
+
+  @Getter(AccessLevel.PACKAGE)
+  private final ObjectMapper objectMapper;
+
+  private final PrettyPrinter prettyPrinter;
+
+  private final SnapshotConfig config;
+
+  private final List<SnapshotMaskingRule> maskingRules;
+
+  DefaultJsonFunction(
+      ObjectMapper objectMapper, PrettyPrinter prettyPrinter, SnapshotConfig config) {
+    this.objectMapper = objectMapper;
+    this.prettyPrinter = prettyPrinter;
+    this.config = config;
+    this.maskingRules = config.getSnapshotMaskingRules();
+  }
+
+  @Override
+  public String apply(Object object) {
+    StringWriter writer = new StringWriter();
+    write(object, writer, prettyPrinter);
+    return writer.toString();
+  }
+
+  /**
+   * Streams the snapshot of {@code object} to {@code out} instead of building a string. The size
+   * limits of the config apply as they do to {@link #apply(Object)}.
+   */
+  void write(Object object, Writer out, PrettyPrinter prettyPrinter) {
+    BoundedJsonGenerator.CountingWriter countingWriter =
+        config.getMaxSnapshotBytes() > 0 ? new BoundedJsonGenerator.CountingWriter(out) : null;
+    try (JsonGenerator generator =
+        guarded(
+            objectMapper
+                .getFactory()
+                .createGenerator(countingWriter == null ? out : countingWriter),
+            countingWriter)) {
+      objectMapper.writer(prettyPrinter).writeValue(generator, object);
+    } catch (Exception e) {
+      throw toSnapshotMatchException(e);
+    }
+  }
+
+  /**
+   * Wraps the generator in the size guard only if a limit is set and in the masking generator only
+   * if there are masking rules; {@code countingWriter} is {@code null} without a byte limit.
+   */
+  private JsonGenerator guarded(
+      JsonGenerator generator, BoundedJsonGenerator.CountingWriter countingWriter) {
+    JsonGenerator bounded =
+        hasSizeLimits()
+            ? new BoundedJsonGenerator(
+                generator,
+                countingWriter,
+                config.getMaxSnapshotBytes(),
+                config.getMaxSnapshotDepth(),
+                config.getMaxSnapshotCollectionSize())
+            : generator;
+    return maskingRules.isEmpty() ? bounded : new MaskingJsonGenerator(bounded, maskingRules);
+  }
+
+  private boolean hasSizeLimits() {
+    return config.getMaxSnapshotBytes() > 0
+        || config.getMaxSnapshotDepth() > 0
+        || config.getMaxSnapshotCollectionSize() > 0;
+  }
+
+  /** Keeps exceptions of the serialization guard, which Jackson wraps with its own path. */
+  private static SnapshotMatchException toSnapshotMatchException(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SnapshotMatchException) {
+        return (SnapshotMatchException) cause;
+      }
+    }
+    return new SnapshotMatchException(e.getMessage());
+  }
+}
@@ -0,0 +1,147 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+
+/**
+ * One file per test class below {@link SnapshotConfig#getFilePath()}, the default store. Files are
+ * merged under an exclusive lock on the single {@value #LOCK_FILE_NAME} file of the store and
+ * replaced by an atomic move of a temporary file, so that parallel test JVMs never lose entries nor
+ * see partially written files. Readers take a shared lock on it only if it exists, so reading
+ * writes nothing.
+ */
+public class FileSystemSnapshotStore implements SnapshotStore {
+
+  /** The lock file below {@link #getFilePath()} that writers of all files of the store share. */
+  static final String LOCK_FILE_NAME = ".snapshots.lock";
+
+  /** Locks by absolute path of the lock file, as file locks are held per JVM, not per thread. */
+  private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+  /** Lock files whose file lock the current thread holds, as file locks do not nest. */
+  private static final ThreadLocal<Set<Path>> HELD_LOCKS = ThreadLocal.withInitial(HashSet::new);
+
+  @Getter private final String filePath;
+
+  /** Attributes of the files as of their last load or put, for {@link SnapshotFileCache}. */
+  private final Map<String, BasicFileAttributes> attributes = new ConcurrentHashMap<>();
+
+  public FileSystemSnapshotStore(String filePath) {
+    this.filePath = filePath;
+  }
+
+  Path path(String fileName) {
+    return Paths.get(filePath + fileName);
+  }
+
+  @Override
+  public Optional<byte[]> load(String fileName) throws IOException {
+    Path path = path(fileName);
+    Path lockFile = lockFile();
+    synchronized (lockOf(lockFile)) {
+      try (FileChannel lockChannel =
+              HELD_LOCKS.get().contains(lockFile) ? null : openLockFile(StandardOpenOption.READ);
+          FileLock lock = lockChannel == null ? null : lockChannel.lock(0, Long.MAX_VALUE, true)) {
+        attributes.put(fileName, Files.readAttributes(path, BasicFileAttributes.class));
+        return Optional.of(Files.readAllBytes(path));
+      } catch (NoSuchFileException e) {
+        return Optional.empty();
+      }
+    }
+  }
+
+  @Override
+  public boolean contains(String fileName) {
+    return Files.exists(path(fileName));
+  }
+
+  @Override
+  public void put(String fileName, UnaryOperator<byte[]> merge) throws IOException {
+    Path path = path(fileName);
+    Path directory = path.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path lockFile = lockFile();
+    synchronized (lockOf(lockFile)) {
+      try (FileChannel lockChannel =
+              openLockFile(StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock lock = lockChannel.lock()) {
+        HELD_LOCKS.get().add(lockFile);
+        byte[] current = Files.exists(path) ? Files.readAllBytes(path) : new byte[0];
+        byte[] merged = merge.apply(current);
+
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+          try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(merged);
+            while (buffer.hasRemaining()) {
+              channel.write(buffer);
+            }
+            channel.force(false);
+          }
+          Files.move(
+              temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+          Files.deleteIfExists(temp);
+        }
+        attributes.put(fileName, Files.readAttributes(path, BasicFileAttributes.class));
+      } finally {
+        HELD_LOCKS.get().remove(lockFile);
+      }
+    }
+  }
+
+  private Path lockFile() {
+    return path(LOCK_FILE_NAME).toAbsolutePath().normalize();
+  }
+
+  /** The channel of the lock file, or {@code null} if it does not exist. */
+  private FileChannel openLockFile(StandardOpenOption... options) throws IOException {
+    try {
+      return FileChannel.open(lockFile(), options);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /** The threads of this JVM take turns on a lock file. */
+  private static Object lockOf(Path path) {
+    return LOCKS.computeIfAbsent(path, key -> new Object());
+  }
+
+  /** The parsed file from the {@link SnapshotFileCache} or {@link SnapshotBundle}, if current. */
+  Optional<SnapshotData> loadParsed(String fileName) {
+    SnapshotFileCache cache = SnapshotFileCache.active();
+    Optional<SnapshotData> cached = cache == null ? Optional.empty() : cache.get(path(fileName));
+    if (cached.isPresent()) {
+      return cached;
+    }
+    SnapshotBundle bundle = SnapshotBundle.active();
+    return bundle == null ? Optional.empty() : bundle.load(fileName, path(fileName));
+  }
+
+  /** Caches the data parsed from, or written to, the file by the last load or put. */
+  void cache(String fileName, SnapshotData data) {
+    SnapshotFileCache cache = SnapshotFileCache.active();
+    BasicFileAttributes loaded = attributes.remove(fileName);
+    if (cache != null && loaded != null) {
+      cache.put(path(fileName), data, loaded);
+    }
+  }
+}
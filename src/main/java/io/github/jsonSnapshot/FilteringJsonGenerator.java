@@ -0,0 +1,117 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.filter.FilteringGeneratorDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.core.filter.TokenFilterContext;
+
+/**
+ * A {@link FilteringGeneratorDelegate} that keeps every token its {@link TokenFilter} does not
+ * exclude. Jackson defers writing the start of an array or object until a value inside it is
+ * included, and drops the ones left empty; this generator writes those when they end. It also
+ * routes the few write methods the delegate would pass on unfiltered through the filtered ones.
+ */
+abstract class FilteringJsonGenerator extends FilteringGeneratorDelegate {
+
+  FilteringJsonGenerator(JsonGenerator delegate, TokenFilter filter) {
+    super(delegate, filter, true, true);
+  }
+
+  /** The JSON pointer of the value about to be written. */
+  String nextValuePath() {
+    return _filterContext.pathAsPointer().toString();
+  }
+
+  /** The JSON pointer of the array or object the next value is written to. */
+  String parentPath() {
+    return _filterContext.getParent().pathAsPointer().toString();
+  }
+
+  /** Writes the enclosing arrays and objects and the field name of the next value, if pending. */
+  void writePath() throws IOException {
+    _filterContext.writePath(delegate);
+  }
+
+  private void writeStartIfEmpty() throws IOException {
+    TokenFilterContext context = _filterContext;
+    if (context.getFilter() != null && !context.isStartHandled()) {
+      context.getParent().writePath(delegate);
+      context.writeImmediatePath(delegate);
+    }
+  }
+
+  @Override
+  public void writeEndArray() throws IOException {
+    writeStartIfEmpty();
+    super.writeEndArray();
+  }
+
+  @Override
+  public void writeEndObject() throws IOException {
+    writeStartIfEmpty();
+    super.writeEndObject();
+  }
+
+  @Override
+  public void writeFieldId(long id) throws IOException {
+    writeFieldName(Long.toString(id));
+  }
+
+  @Override
+  public void writeArray(int[] array, int offset, int length) throws IOException {
+    writeStartArray(length);
+    for (int i = offset; i < offset + length; i++) {
+      writeNumber(array[i]);
+    }
+    writeEndArray();
+  }
+
+  @Override
+  public void writeArray(long[] array, int offset, int length) throws IOException {
+    writeStartArray(length);
+    for (int i = offset; i < offset + length; i++) {
+      writeNumber(array[i]);
+    }
+    writeEndArray();
+  }
+
+  @Override
+  public void writeArray(double[] array, int offset, int length) throws IOException {
+    writeStartArray(length);
+    for (int i = offset; i < offset + length; i++) {
+      writeNumber(array[i]);
+    }
+    writeEndArray();
+  }
+
+  @Override
+  public void writeString(Reader reader, int len) throws IOException {
+    StringBuilder text = new StringBuilder();
+    char[] buffer = new char[4096];
+    int remaining = len < 0 ? Integer.MAX_VALUE : len;
+    int read;
+    while (remaining > 0
+        && (read = reader.read(buffer, 0, Math.min(buffer.length, remaining))) >= 0) {
+      text.append(buffer, 0, read);
+      remaining -= read;
+    }
+    writeString(text.toString());
+  }
+
+  @Override
+  public void writeEmbeddedObject(Object object) throws IOException {
+    if (object == null) {
+      writeNull();
+    } else if (object instanceof byte[]) {
+      writeBinary((byte[]) object);
+    } else {
+      throw new JsonGenerationException(
+          "No native support for writing embedded objects of type " + object.getClass().getName(),
+          this);
+    }
+  }
+}
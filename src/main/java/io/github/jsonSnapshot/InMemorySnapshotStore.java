@@ -0,0 +1,33 @@
+package io.github.jsonSnapshot;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps snapshot files in memory only, e.g. for fast tests of serializers or of this library. The
+ * snapshots live as long as the store, so return the same instance from {@link
+ * SnapshotConfig#getSnapshotStore()} for snapshots to be matched across test classes.
+ */
+public class InMemorySnapshotStore implements SnapshotStore {
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+  @Override
+  public Optional<byte[]> load(String fileName) {
+    return Optional.ofNullable(files.get(fileName));
+  }
+
+  @Override
+  public boolean contains(String fileName) {
+    return files.containsKey(fileName);
+  }
+
+  @Override
+  public void put(String fileName, UnaryOperator<byte[]> merge) {
+    files.compute(fileName, (name, content) -> merge.apply(content == null ? EMPTY : content));
+  }
+}
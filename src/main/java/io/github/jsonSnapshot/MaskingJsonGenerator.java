@@ -0,0 +1,57 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+
+/**
+ * Applies {@link SnapshotMaskingRule}s while serializing: when a field name matches a rule, the
+ * replacement is written and the filter excludes the original value, so masking needs no extra pass
+ * over the output.
+ */
+class MaskingJsonGenerator extends FilteringJsonGenerator {
+
+  /** Masks the matching properties of all levels of one snapshot. */
+  private static class Masking extends TokenFilter {
+
+    private final List<SnapshotMaskingRule> rules;
+
+    private MaskingJsonGenerator generator;
+
+    Masking(List<SnapshotMaskingRule> rules) {
+      this.rules = rules;
+    }
+
+    @Override
+    public TokenFilter includeProperty(String name) {
+      for (SnapshotMaskingRule rule : rules) {
+        if (rule.matches(name, generator.getFilterContext())) {
+          generator.writeReplacement(rule.getReplacement());
+          return null;
+        }
+      }
+      return this;
+    }
+  }
+
+  MaskingJsonGenerator(JsonGenerator delegate, List<SnapshotMaskingRule> rules) {
+    this(delegate, new Masking(rules));
+  }
+
+  private MaskingJsonGenerator(JsonGenerator delegate, Masking masking) {
+    super(delegate, masking);
+    masking.generator = this;
+  }
+
+  private void writeReplacement(Object replacement) {
+    try {
+      writePath();
+      delegate.writeObject(replacement);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -6,6 +6,12 @@ import java.util.function.Function;
 
 public class Snapshot {
 
+  /**
+   * Characters of the actual output and of the difference shown in the exception of a mismatch
+   * whose actual output is written to a side file.
+   */
+  static final int MISMATCH_PREVIEW_LENGTH = 4000;
+
   private SnapshotFile snapshotFile;
 
   private Class clazz;
@@ -18,14 +24,40 @@ public class Snapshot {
 
   private Object[] current;
 
+  /** Distinguishes the sub-snapshots of one test method, {@code null} for a plain snapshot. */
+  private String key;
+
+  private String snapshotName;
+
+  /** The entry new and updated snapshots are stored as {@link SnapshotDelta} of, if any. */
+  private String deltaBase;
+
+  /** Whether only a {@link SnapshotDigest} of the snapshot is stored. */
+  private boolean digest;
+
+  /** Whether the actual output of a mismatching digest snapshot is written to a side file. */
+  private boolean dumpOnMismatch;
+
+  Snapshot(
+      SnapshotFile snapshotFile,
+      Class clazz,
+      Method method,
+      Function<Object, String> serializeFunction,
+      SnapshotMatchingStrategy snapshotMatchingStrategy,
+      Object... current) {
+    this(snapshotFile, clazz, method, null, serializeFunction, snapshotMatchingStrategy, current);
+  }
+
   Snapshot(
       SnapshotFile snapshotFile,
       Class clazz,
       Method method,
+      String key,
       Function<Object, String> serializeFunction,
       SnapshotMatchingStrategy snapshotMatchingStrategy,
       Object... current) {
     this.current = current;
+    this.key = key;
     this.snapshotFile = snapshotFile;
     this.clazz = clazz;
     this.method = method;
@@ -35,26 +67,224 @@ public class Snapshot {
 
   public void toMatchSnapshot() {
 
-    final SnapshotData snapshots = snapshotFile.getStoredSnapshots();
-    final Optional<SnapshotDataItem> snapshot = snapshots.getItemByName(getSnapshotName());
+    final Optional<SnapshotDataItem> snapshot = findStoredSnapshot();
 
-    final SnapshotDataItem currentObject = takeSnapshot();
+    final long serializationStart = System.nanoTime();
+    final SnapshotDataItem currentObject = serialize();
+    final long matchStart = System.nanoTime();
+
+    SnapshotReport.Outcome outcome = SnapshotReport.Outcome.FAILED;
+    try {
+      outcome = matchOrStore(snapshot, currentObject);
+    } finally {
+      release();
+      report(
+          currentObject, matchStart - serializationStart, System.nanoTime() - matchStart, outcome);
+    }
+  }
+
+  /**
+   * Stores only the SHA-256, byte length and element count of this snapshot instead of its content.
+   * With the default JSON serialization the output is streamed through the digest, so verifying
+   * huge outputs needs constant memory. A mismatch tells that, not where, the output changed.
+   */
+  public Snapshot asDigest() {
+    return asDigest(false);
+  }
+
+  /**
+   * Like {@link #asDigest()}.
+   *
+   * @param dumpOnMismatch whether to write the actual output of a mismatching snapshot to {@code
+   *     <snapshot file>.actual} for inspection, as {@link SnapshotConfig#isWriteActualSnapshots()}
+   *     does for other snapshots; keeps the {@code expect} arguments until the snapshot is matched
+   */
+  public Snapshot asDigest(boolean dumpOnMismatch) {
+    this.digest = true;
+    this.dumpOnMismatch = dumpOnMismatch;
+    return this;
+  }
+
+  /**
+   * Stores this snapshot as a structural patch against the entry {@code baseSnapshotName} of the
+   * same file, if the patch is smaller than the snapshot itself. Useful for large snapshots of
+   * scenarios that differ in a few fields only.
+   */
+  public Snapshot asDeltaOf(String baseSnapshotName) {
+    this.deltaBase = baseSnapshotName;
+    return this;
+  }
+
+  /** The base of the delta this snapshot is stored as, never set for digest snapshots. */
+  String getDeltaBase() {
+    return digest ? null : deltaBase;
+  }
+
+  String getKey() {
+    return key;
+  }
+
+  SnapshotFile getSnapshotFile() {
+    return snapshotFile;
+  }
+
+  Optional<SnapshotDataItem> findStoredSnapshot() {
+    return snapshotFile
+        .getStoredSnapshots()
+        .getItem(clazz.getName(), key == null ? method.getName() : getMethodKey());
+  }
+
+  void report(
+      final SnapshotDataItem currentObject,
+      final long serializationNanos,
+      final long matchNanos,
+      final SnapshotReport.Outcome outcome) {
+    final SnapshotReport report = SnapshotReport.active();
+    if (report != null) {
+      report.recordSnapshot(
+          new SnapshotReport.SnapshotRecord(
+              snapshotFile.getFileName(),
+              clazz.getName(),
+              getSnapshotName(),
+              currentObject.getDataSize(),
+              SnapshotReport.toMicros(serializationNanos),
+              SnapshotReport.toMicros(matchNanos),
+              snapshotMatchingStrategy.getClass().getSimpleName(),
+              outcome));
+    }
+  }
+
+  private SnapshotReport.Outcome matchOrStore(
+      final Optional<SnapshotDataItem> snapshot, final SnapshotDataItem currentObject) {
 
     // Match Snapshot
     if (snapshot.isPresent()) {
-      snapshotMatchingStrategy.match(snapshot.get(), currentObject.getData());
+      try {
+        match(snapshot.get(), currentObject);
+        snapshotFile.recordUnchanged(getSnapshotName());
+        return SnapshotReport.Outcome.MATCHED;
+      } catch (SnapshotMatchException e) {
+        if (!snapshotFile.isUpdateMode()) {
+          throw e;
+        }
+        // Update Snapshot
+        snapshotFile.update(toStoredForm(currentObject));
+        return SnapshotReport.Outcome.UPDATED;
+      }
     }
     // Create New Snapshot
     else {
-      snapshotFile.push(currentObject);
+      if (key == null) {
+        snapshotFile.push(toStoredForm(currentObject));
+      } else {
+        snapshotFile.pushDeferred(toStoredForm(currentObject));
+      }
+      return SnapshotReport.Outcome.CREATED;
     }
   }
 
-  private SnapshotDataItem takeSnapshot() {
+  /**
+   * Matches the current against the stored snapshot, writing the actual output of a mismatch where
+   * configured. Changes nothing in the snapshot file, so entries of a {@link SnapshotBatch} are
+   * matched in parallel.
+   */
+  void match(final SnapshotDataItem snapshot, final SnapshotDataItem currentObject) {
+    if (digest || SnapshotDigest.isDigest(snapshot)) {
+      matchDigest(snapshot, currentObject);
+    } else if (snapshotFile.isWriteActual() && !snapshotFile.isUpdateMode()) {
+      matchWritingActual(snapshot, currentObject);
+    } else {
+      snapshotMatchingStrategy.match(snapshot, currentObject.getData());
+    }
+  }
+
+  private void matchWritingActual(
+      final SnapshotDataItem snapshot, final SnapshotDataItem currentObject) {
+    try {
+      snapshotMatchingStrategy.match(snapshot, currentObject.getData(), MISMATCH_PREVIEW_LENGTH);
+    } catch (SnapshotMatchException e) {
+      String message = e.getMessage();
+      try {
+        message += "\nActual snapshot written to " + snapshotFile.writeActual(currentObject);
+      } catch (RuntimeException writeError) {
+        message += "\nUnable to write actual snapshot: " + writeError;
+      }
+      throw new SnapshotMatchException(message, e.getCause());
+    }
+  }
+
+  private void matchDigest(final SnapshotDataItem snapshot, final SnapshotDataItem currentObject) {
+    if (snapshot.getData().equals(currentObject.getData())) {
+      return;
+    }
+    String message =
+        "Digest snapshot "
+            + getSnapshotName()
+            + " changed: expected "
+            + snapshot.getData()
+            + " but was "
+            + currentObject.getData();
+    if (dumpOnMismatch && current != null && !snapshotFile.isReadOnly()) {
+      try {
+        message +=
+            ", actual output written to "
+                + snapshotFile.writeActual(
+                    new SnapshotDataItem(getSnapshotName(), serializeFunction.apply(current)));
+      } catch (RuntimeException e) {
+        message += ", unable to write actual output: " + e;
+      }
+    }
+    throw new SnapshotMatchException(message);
+  }
+
+  private SnapshotDataItem toStoredForm(final SnapshotDataItem currentObject) {
+    if (digest || deltaBase == null) {
+      return currentObject;
+    }
+    return snapshotFile
+        .getStoredSnapshots()
+        .getRawItem(deltaBase)
+        .map(base -> SnapshotDelta.encode(currentObject, base))
+        .orElse(currentObject);
+  }
+
+  /**
+   * Takes the snapshot and releases the {@code expect} arguments, unless the actual output of a
+   * mismatching digest is dumped from them; {@link #release()} them once matched.
+   */
+  SnapshotDataItem serialize() {
+    try {
+      return takeSnapshot();
+    } finally {
+      if (!dumpOnMismatch) {
+        release();
+      }
+    }
+  }
+
+  SnapshotDataItem takeSnapshot() {
+    if (current == null) {
+      throw new SnapshotMatchException("Snapshot " + getSnapshotName() + " was already taken");
+    }
+    if (digest) {
+      return new SnapshotDataItem(getSnapshotName(), SnapshotDigest.of(serializeFunction, current));
+    }
     return new SnapshotDataItem(getSnapshotName(), serializeFunction.apply(current));
   }
 
+  /** Drops the {@code expect} arguments, which are not needed anymore once serialized. */
+  void release() {
+    current = null;
+  }
+
   public String getSnapshotName() {
-    return clazz.getName() + "." + method.getName();
+    if (snapshotName == null) {
+      snapshotName = clazz.getName() + "." + (key == null ? method.getName() : getMethodKey());
+    }
+    return snapshotName;
+  }
+
+  private String getMethodKey() {
+    return method.getName() + "[" + key + "]";
   }
 }
@@ -0,0 +1,163 @@
+package io.github.jsonSnapshot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Many named sub-snapshots of a single test method, created by {@link
+ * SnapshotMatcher#expectAll(java.util.Map)}. The entries are serialized and matched in parallel on
+ * the common fork-join pool, like single snapshots including digests and actual output side files;
+ * new entries are stored with a single file write.
+ */
+public class SnapshotBatch {
+
+  private final List<Snapshot> snapshots;
+
+  SnapshotBatch(List<Snapshot> snapshots) {
+    this.snapshots = snapshots;
+  }
+
+  private static class Result {
+    private final Snapshot snapshot;
+    private SnapshotDataItem currentObject;
+    private boolean stored;
+    private SnapshotMatchException failure;
+    private long serializationNanos;
+    private long matchNanos;
+
+    Result(Snapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+  }
+
+  /**
+   * Stores all other entries as structural patches against the entry with the given key, see {@link
+   * Snapshot#asDeltaOf(String)}.
+   */
+  public SnapshotBatch asDeltaOf(String baseKey) {
+    final Snapshot base =
+        snapshots
+            .stream()
+            .filter(snapshot -> baseKey.equals(snapshot.getKey()))
+            .findFirst()
+            .orElseThrow(() -> new SnapshotMatchException("No snapshot with key " + baseKey));
+    for (Snapshot snapshot : snapshots) {
+      if (snapshot != base) {
+        snapshot.asDeltaOf(base.getSnapshotName());
+      }
+    }
+    return this;
+  }
+
+  public void toMatchSnapshot() {
+    final List<Result> results =
+        snapshots.parallelStream().map(this::serializeAndMatch).collect(Collectors.toList());
+
+    // Storing is not thread safe, it is done once for the whole batch
+    final SnapshotFile snapshotFile = snapshots.get(0).getSnapshotFile();
+    // Bases are stored first, so that deltas are taken against what ends up in the file
+    final Map<String, SnapshotDataItem> current = new HashMap<>();
+    final List<Result> ordered = new ArrayList<>(results);
+    ordered.sort(Comparator.comparing(result -> result.snapshot.getDeltaBase() != null));
+    for (Result result : ordered) {
+      if (!result.stored || (result.failure != null && snapshotFile.isUpdateMode())) {
+        current.put(result.snapshot.getSnapshotName(), result.currentObject);
+      }
+    }
+    final List<SnapshotDataItem> created = new ArrayList<>();
+    final List<Result> failures = new ArrayList<>();
+    for (Result result : ordered) {
+      if (!result.stored) {
+        created.add(toStoredForm(result, current));
+      } else if (result.failure == null) {
+        snapshotFile.recordUnchanged(result.snapshot.getSnapshotName());
+      } else if (snapshotFile.isUpdateMode()) {
+        snapshotFile.update(toStoredForm(result, current));
+      } else {
+        failures.add(result);
+      }
+    }
+    snapshotFile.pushAll(created);
+
+    for (Result result : results) {
+      result.snapshot.report(
+          result.currentObject, result.serializationNanos, result.matchNanos, outcome(result));
+    }
+
+    if (!failures.isEmpty()) {
+      throw generateError(failures);
+    }
+  }
+
+  /** Deltas are taken against the base as created or updated by this batch, if it is. */
+  private static SnapshotDataItem toStoredForm(
+      final Result result, final Map<String, SnapshotDataItem> current) {
+    final String deltaBase = result.snapshot.getDeltaBase();
+    if (deltaBase == null) {
+      return result.currentObject;
+    }
+    final Optional<SnapshotDataItem> base =
+        current.containsKey(deltaBase)
+            ? Optional.of(current.get(deltaBase))
+            : result.snapshot.getSnapshotFile().getStoredSnapshots().getRawItem(deltaBase);
+    return base.map(item -> SnapshotDelta.encode(result.currentObject, item))
+        .orElse(result.currentObject);
+  }
+
+  private Result serializeAndMatch(final Snapshot snapshot) {
+    final Result result = new Result(snapshot);
+    final Optional<SnapshotDataItem> stored = snapshot.findStoredSnapshot();
+
+    final long serializationStart = System.nanoTime();
+    result.currentObject = snapshot.serialize();
+    final long matchStart = System.nanoTime();
+    result.serializationNanos = matchStart - serializationStart;
+
+    try {
+      if (stored.isPresent()) {
+        result.stored = true;
+        snapshot.match(stored.get(), result.currentObject);
+      }
+    } catch (SnapshotMatchException e) {
+      result.failure = e;
+    } finally {
+      snapshot.release();
+    }
+    result.matchNanos = System.nanoTime() - matchStart;
+    return result;
+  }
+
+  private static SnapshotReport.Outcome outcome(final Result result) {
+    if (!result.stored) {
+      return SnapshotReport.Outcome.CREATED;
+    }
+    if (result.failure == null) {
+      return SnapshotReport.Outcome.MATCHED;
+    }
+    return result.snapshot.getSnapshotFile().isUpdateMode()
+        ? SnapshotReport.Outcome.UPDATED
+        : SnapshotReport.Outcome.FAILED;
+  }
+
+  private SnapshotMatchException generateError(final List<Result> failures) {
+    final StringBuilder message =
+        new StringBuilder()
+            .append(failures.size())
+            .append(" of ")
+            .append(snapshots.size())
+            .append(" snapshots did not match:");
+    for (Result failure : failures) {
+      message.append("\n").append(failure.snapshot.getSnapshotName());
+    }
+    message.append("\n\n").append(failures.get(0).failure.getMessage());
+
+    final SnapshotMatchException error = new SnapshotMatchException(message.toString());
+    failures.forEach(failure -> error.addSuppressed(failure.failure));
+    return error;
+  }
+}
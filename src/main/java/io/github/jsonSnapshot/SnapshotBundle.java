@@ -0,0 +1,282 @@
+package io.github.jsonSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * All snapshot files of a test source tree, compiled into one binary file on the test class path.
+ */
+class SnapshotBundle {
+
+  private static Logger log = LoggerFactory.getLogger(SnapshotBundle.class);
+
+  /** The class path resource the bundle is loaded from. */
+  static final String RESOURCE_NAME = "snapshot-bundle.bin";
+
+  private static final int MAGIC = 0x534E5042;
+
+  private static final int VERSION = 1;
+
+  /** {@code magic, version, fileCount, entryCount, stringsOffset}, all integers big endian. */
+  private static final int HEADER_SIZE = 20;
+
+  /** {@code nameOffset, nameLength, size (long), lastModified (long), firstEntry, entryCount}. */
+  private static final int FILE_RECORD_SIZE = 32;
+
+  /** {@code nameOffset, nameLength, dataOffset, dataLength, deltaBaseOffset, deltaBaseLength}. */
+  private static final int ENTRY_RECORD_SIZE = 24;
+
+  private static boolean loaded;
+
+  private static SnapshotBundle active;
+
+  private final ByteBuffer buffer;
+
+  private final int fileCount;
+
+  private final int entriesOffset;
+
+  private final int stringsOffset;
+
+  SnapshotBundle(ByteBuffer buffer) {
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Not a snapshot bundle of version " + VERSION);
+    }
+    this.buffer = buffer;
+    this.fileCount = buffer.getInt(8);
+    this.entriesOffset = HEADER_SIZE + fileCount * FILE_RECORD_SIZE;
+    this.stringsOffset = buffer.getInt(16);
+  }
+
+  /** The bundle on the class path, or {@code null} if there is none. */
+  static synchronized SnapshotBundle active() {
+    if (!loaded) {
+      loaded = true;
+      URL resource = Thread.currentThread().getContextClassLoader().getResource(RESOURCE_NAME);
+      if (resource != null) {
+        try {
+          active = new SnapshotBundle(map(resource));
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+          log.warn("Ignoring snapshot bundle " + resource, e);
+        }
+      }
+    }
+    return active;
+  }
+
+  private static ByteBuffer map(URL resource) throws IOException, URISyntaxException {
+    if ("file".equals(resource.getProtocol())) {
+      try (FileChannel channel =
+          FileChannel.open(Paths.get(resource.toURI()), StandardOpenOption.READ)) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    }
+    try (InputStream in = resource.openStream()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] chunk = new byte[8192];
+      for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+        out.write(chunk, 0, read);
+      }
+      return ByteBuffer.wrap(out.toByteArray());
+    }
+  }
+
+  /**
+   * The snapshots of {@code fileName}, relative to the snapshot path, if the bundle holds the
+   * current content of {@code file}.
+   */
+  Optional<SnapshotData> load(String fileName, Path file) {
+    int record = findFile(fileName);
+    if (record < 0) {
+      return Optional.empty();
+    }
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      if (attributes.size() != buffer.getLong(record + 8)
+          || attributes.lastModifiedTime().toMillis() != buffer.getLong(record + 16)) {
+        return Optional.empty();
+      }
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+
+    SnapshotData data = new SnapshotData();
+    Map<Integer, byte[]> payloads = new HashMap<>();
+    int firstEntry = buffer.getInt(record + 24);
+    int entryCount = buffer.getInt(record + 28);
+    for (int i = firstEntry; i < firstEntry + entryCount; i++) {
+      int entry = entriesOffset + i * ENTRY_RECORD_SIZE;
+      String name = string(buffer.getInt(entry), buffer.getInt(entry + 4));
+      int dataOffset = buffer.getInt(entry + 8);
+      int dataLength = buffer.getInt(entry + 12);
+      byte[] payload = payloads.computeIfAbsent(dataOffset, offset -> bytes(offset, dataLength));
+      int deltaBaseOffset = buffer.getInt(entry + 16);
+      data.add(
+          deltaBaseOffset < 0
+              ? SnapshotDataItem.ofUtf8Data(name, payload)
+              : SnapshotDataItem.ofDelta(
+                  name, string(deltaBaseOffset, buffer.getInt(entry + 20)), payload));
+    }
+    return Optional.of(data);
+  }
+
+  /** Binary search of the file table, returns the absolute offset of the record or -1. */
+  private int findFile(String fileName) {
+    int low = 0;
+    int high = fileCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int record = HEADER_SIZE + middle * FILE_RECORD_SIZE;
+      int order = string(buffer.getInt(record), buffer.getInt(record + 4)).compareTo(fileName);
+      if (order < 0) {
+        low = middle + 1;
+      } else if (order > 0) {
+        high = middle - 1;
+      } else {
+        return record;
+      }
+    }
+    return -1;
+  }
+
+  private byte[] bytes(int offset, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(stringsOffset + offset);
+    view.get(bytes);
+    return bytes;
+  }
+
+  private String string(int offset, int length) {
+    return new String(bytes(offset, length), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compiles all snapshot files below {@code root} into a bundle at {@code output}. The snapshot
+   * files are parsed in parallel.
+   */
+  static void compile(Path root, Path output) throws IOException {
+    List<Path> files = new ArrayList<>(SnapshotFileWalk.walk(root));
+    List<String> fileNames = new ArrayList<>();
+    for (Path file : files) {
+      fileNames.add(root.relativize(file).toString().replace('\\', '/'));
+    }
+    fileNames.sort(null);
+
+    List<BasicFileAttributes> attributes = new ArrayList<>();
+    for (String fileName : fileNames) {
+      attributes.add(Files.readAttributes(root.resolve(fileName), BasicFileAttributes.class));
+    }
+    SnapshotPayloads payloads =
+        new SnapshotPayloads(new FileSystemSnapshotStore(root.toString() + "/"));
+    SnapshotData[] contents = new SnapshotData[fileNames.size()];
+    IntStream.range(0, contents.length)
+        .parallel()
+        .forEach(
+            i -> {
+              try {
+                SnapshotData content = new SnapshotData();
+                SnapshotFile.parse(
+                        Files.readAllBytes(root.resolve(fileNames.get(i))),
+                        payloads,
+                        fileNames.get(i))
+                    .forEach(content::add);
+                contents[i] = content;
+              } catch (IOException e) {
+                throw new SnapshotMatchException("Unable to read " + fileNames.get(i) + ": " + e);
+              }
+            });
+
+    ByteArrayOutputStream strings = new ByteArrayOutputStream();
+    Map<String, Integer> stringOffsets = new HashMap<>();
+    Map<ByteBuffer, Integer> payloadOffsets = new HashMap<>();
+    ByteArrayOutputStream tables = new ByteArrayOutputStream();
+    DataOutputStream fileTable = new DataOutputStream(tables);
+    ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+    DataOutputStream entryTable = new DataOutputStream(entryBytes);
+
+    int entryCount = 0;
+    for (int i = 0; i < fileNames.size(); i++) {
+      List<SnapshotDataItem> items = contents[i].getItems();
+      writeString(fileTable, fileNames.get(i), strings, stringOffsets);
+      fileTable.writeLong(attributes.get(i).size());
+      fileTable.writeLong(attributes.get(i).lastModifiedTime().toMillis());
+      fileTable.writeInt(entryCount);
+      fileTable.writeInt(items.size());
+      for (SnapshotDataItem item : items) {
+        writeString(entryTable, item.getName(), strings, stringOffsets);
+        byte[] payload = item.getUtf8Data();
+        Integer payloadOffset = payloadOffsets.get(ByteBuffer.wrap(payload));
+        if (payloadOffset == null) {
+          payloadOffset = strings.size();
+          payloadOffsets.put(ByteBuffer.wrap(payload), payloadOffset);
+          strings.write(payload, 0, payload.length);
+        }
+        entryTable.writeInt(payloadOffset);
+        entryTable.writeInt(payload.length);
+        if (item.getDeltaBase() == null) {
+          entryTable.writeInt(-1);
+          entryTable.writeInt(0);
+        } else {
+          writeString(entryTable, item.getDeltaBase(), strings, stringOffsets);
+        }
+      }
+      entryCount += items.size();
+    }
+
+    Files.createDirectories(output.toAbsolutePath().getParent());
+    Path temp = Files.createTempFile(output.toAbsolutePath().getParent(), RESOURCE_NAME, ".tmp");
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(fileNames.size());
+      out.writeInt(entryCount);
+      out.writeInt(HEADER_SIZE + tables.size() + entryBytes.size());
+      tables.writeTo(out);
+      entryBytes.writeTo(out);
+      strings.writeTo(out);
+    }
+    Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    log.info(
+        "Compiled {} snapshot files with {} entries into {}", fileNames.size(), entryCount, output);
+  }
+
+  private static void writeString(
+      DataOutputStream table,
+      String value,
+      ByteArrayOutputStream strings,
+      Map<String, Integer> offsets)
+      throws IOException {
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    Integer offset = offsets.get(value);
+    if (offset == null) {
+      offset = strings.size();
+      offsets.put(value, offset);
+      strings.write(utf8, 0, utf8.length);
+    }
+    table.writeInt(offset);
+    table.writeInt(utf8.length);
+  }
+}
@@ -0,0 +1,32 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compiles all snapshot files of a test source tree into the {@code snapshot-bundle.bin} read by
+ * the test JVMs, e.g. with the {@code exec-maven-plugin} in the {@code process-test-resources}
+ * phase.
+ */
+public final class SnapshotBundleCompiler {
+
+  private SnapshotBundleCompiler() {}
+
+  /**
+   * @param args the snapshot path, by default {@code src/test/java/}, and the bundle file, by
+   *     default {@code target/test-classes/snapshot-bundle.bin}
+   */
+  public static void main(String[] args) throws IOException {
+    Path root = Paths.get(args.length > 0 ? args[0] : new DefaultConfig().getFilePath());
+    Path output =
+        Paths.get(
+            args.length > 1 ? args[1] : "target/test-classes/" + SnapshotBundle.RESOURCE_NAME);
+    if (!Files.isDirectory(root)) {
+      throw new NoSuchFileException(root.toString());
+    }
+    SnapshotBundle.compile(root, output);
+  }
+}
@@ -1,14 +1,166 @@
 package io.github.jsonSnapshot;
 
+import java.util.Collections;
+import java.util.List;
+
 import io.github.jsonSnapshot.matchingstrategy.StringEqualsMatchingStrategy;
 
 public interface SnapshotConfig {
 
+  /** System property enabling {@link #isUpdateSnapshots()}, e.g. {@code -DupdateSnapshots=true}. */
+  String UPDATE_SNAPSHOTS_PROPERTY = "updateSnapshots";
+
+  /**
+   * System property setting {@link #getReportDirectory()}, e.g. {@code
+   * -DsnapshotReportDirectory=target/snapshot-report}.
+   */
+  String REPORT_DIRECTORY_PROPERTY = "snapshotReportDirectory";
+
+  /**
+   * System property enabling {@link #isDeduplicateSnapshots()}, e.g. {@code
+   * -DdeduplicateSnapshots=true}.
+   */
+  String DEDUPLICATE_SNAPSHOTS_PROPERTY = "deduplicateSnapshots";
+
+  /** System property enabling {@link #isWatchSnapshots()}, e.g. {@code -DwatchSnapshots=true}. */
+  String WATCH_SNAPSHOTS_PROPERTY = "watchSnapshots";
+
+  /**
+   * System property enabling {@link #isCanonicalSnapshots()}, e.g. {@code
+   * -DcanonicalSnapshots=true}.
+   */
+  String CANONICAL_SNAPSHOTS_PROPERTY = "canonicalSnapshots";
+
+  /**
+   * System property enabling {@link #isWriteActualSnapshots()}, e.g. {@code
+   * -DwriteActualSnapshots=true}.
+   */
+  String WRITE_ACTUAL_SNAPSHOTS_PROPERTY = "writeActualSnapshots";
+
+  /**
+   * System property enabling {@link #isReadOnlySnapshots()}, e.g. {@code -DreadOnlySnapshots=true}.
+   */
+  String READ_ONLY_SNAPSHOTS_PROPERTY = "readOnlySnapshots";
+
   default String getFilePath() {
     return "src/test/java/";
   }
 
+  /**
+   * Where the snapshot files are kept, by default one file per test class below {@link
+   * #getFilePath()}.
+   */
+  default SnapshotStore getSnapshotStore() {
+    return new FileSystemSnapshotStore(getFilePath());
+  }
+
   default SnapshotMatchingStrategy getSnapshotMatchingStrategy() {
     return StringEqualsMatchingStrategy.INSTANCE;
   }
+
+  /**
+   * Rules replacing volatile values (timestamps, generated ids, ...) while the {@code expect}
+   * arguments are serialized. Only applied by the default JSON serialization.
+   */
+  default List<SnapshotMaskingRule> getSnapshotMaskingRules() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * When enabled, mismatching snapshots are replaced by the current output instead of failing, and
+   * each snapshot file is written once by {@link SnapshotMatcher#validateSnapshots()}.
+   */
+  default boolean isUpdateSnapshots() {
+    return Boolean.getBoolean(UPDATE_SNAPSHOTS_PROPERTY);
+  }
+
+  /**
+   * Directory to write a {@link SnapshotReport} of the whole test run to, or {@code null} to not
+   * collect one.
+   */
+  default String getReportDirectory() {
+    return System.getProperty(REPORT_DIRECTORY_PROPERTY);
+  }
+
+  /**
+   * When enabled, snapshot files reference their payloads by hash, and each distinct payload is
+   * stored once in a {@code snapshot-blobs} directory below {@link #getFilePath()}. Files written
+   * either way can always be read.
+   */
+  default boolean isDeduplicateSnapshots() {
+    return Boolean.getBoolean(DEDUPLICATE_SNAPSHOTS_PROPERTY);
+  }
+
+  /**
+   * When enabled, parsed snapshot files are kept in memory for the lifetime of the JVM and only
+   * read again after they changed on disk. Meant for long-lived test JVMs, e.g. continuous testing
+   * in an IDE.
+   */
+  default boolean isWatchSnapshots() {
+    return Boolean.getBoolean(WATCH_SNAPSHOTS_PROPERTY);
+  }
+
+  /**
+   * When enabled, the default JSON serialization is canonical: properties are sorted by name,
+   * elements of unordered sets by their JSON, and numbers are written in their shortest form. The
+   * output is then the same on every run, so the {@link StringEqualsMatchingStrategy} can be used
+   * where a lenient strategy was needed for unstable ordering. Generated {@link SnapshotSerializer
+   * serializers} are not used, as they write properties in declaration order.
+   */
+  default boolean isCanonicalSnapshots() {
+    return Boolean.getBoolean(CANONICAL_SNAPSHOTS_PROPERTY);
+  }
+
+  /**
+   * When enabled, the actual output of a mismatching snapshot is written to {@code <snapshot
+   * file>.actual} next to the snapshot file, and the exception only shows the first {@value
+   * Snapshot#MISMATCH_PREVIEW_LENGTH} characters of it and of the difference. The side file is
+   * written when the snapshots are validated, without the output of snapshots that matched again.
+   * Keeps failures of large snapshots readable and cheap to report; diff the side file against the
+   * snapshot file instead.
+   */
+  default boolean isWriteActualSnapshots() {
+    return Boolean.getBoolean(WRITE_ACTUAL_SNAPSHOTS_PROPERTY);
+  }
+
+  /**
+   * When enabled, snapshots are only verified, e.g. on CI: a missing snapshot file or entry fails
+   * instead of being created, snapshot files are opened read-only when first needed, and nothing is
+   * written to the snapshot store, not even {@link #isWriteActualSnapshots() actual snapshots} or
+   * digest dumps. Cannot be combined with {@link #isUpdateSnapshots()}.
+   */
+  default boolean isReadOnlySnapshots() {
+    return Boolean.getBoolean(READ_ONLY_SNAPSHOTS_PROPERTY);
+  }
+
+  /**
+   * The most UTF-8 bytes the default JSON serialization writes for one snapshot before failing, 0
+   * for no limit. Unlimited by default; set it to have an accidentally snapshotted object graph
+   * fail fast instead of filling the heap.
+   */
+  default long getMaxSnapshotBytes() {
+    return 0;
+  }
+
+  /** The deepest nesting of arrays and objects in one snapshot, 0 (the default) for no limit. */
+  default int getMaxSnapshotDepth() {
+    return 0;
+  }
+
+  /**
+   * The most elements of an array or entries of an object in one snapshot, 0 (the default) for no
+   * limit.
+   */
+  default int getMaxSnapshotCollectionSize() {
+    return 0;
+  }
+
+  /**
+   * The largest share of the scanned snapshot files {@link SnapshotOrphanScanner#deleteOrphans()}
+   * deletes. A larger share of orphans, e.g. from scanning with an incomplete class path, fails
+   * instead of deleting anything.
+   */
+  default double getMaxOrphanFileShare() {
+    return 0.5;
+  }
 }
@@ -1,31 +1,241 @@
 package io.github.jsonSnapshot;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Value;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The snapshots of one file, indexed by class name and then by method name. The class name is
+ * stored once per class instead of once per snapshot, and lookups by class and method need no
+ * string concatenation. The methods of a class are kept in the order of {@link
+ * #compareSuffixes(String, String)}, by method, then by key, so that iterating, e.g. to write the
+ * file, needs no sorting, and lookups stay logarithmic for methods with many keyed snapshots, e.g.
+ * one per invocation of a parameterized test.
+ */
 @Value
 public class SnapshotData {
 
   @Getter(AccessLevel.NONE)
-  private final TreeMap<String, SnapshotDataItem> snapshotDataItems = new TreeMap<>();
+  private final TreeMap<String, TreeMap<String, SnapshotDataItem>> snapshotDataItems =
+      new TreeMap<>(SnapshotData::comparePrefixes);
+
+  /** Parsed bases of {@link SnapshotDelta} items, kept as long as the base is not replaced. */
+  @Getter(AccessLevel.NONE)
+  private final Map<String, JsonNode> deltaBases = new ConcurrentHashMap<>();
+
+  /** The names of the {@link SnapshotDelta} items by the name of their base. */
+  @Getter(AccessLevel.NONE)
+  private final Map<String, Set<String>> deltasByBase = new HashMap<>();
 
   public void add(@NonNull final SnapshotDataItem snapshotDataItem) {
-    snapshotDataItems.put(snapshotDataItem.getName(), snapshotDataItem);
+    final String name = snapshotDataItem.getName();
+    final Optional<SnapshotDataItem> replaced = getRawItem(name);
+    if (replaced.isPresent()) {
+      resolveDeltasOf(name);
+      unindexDelta(replaced.get());
+    }
+    itemsOf(snapshotDataItem.getNamePrefix())
+        .put(snapshotDataItem.getNameSuffix(), snapshotDataItem);
+    indexDelta(snapshotDataItem);
+  }
+
+  /** Removes the item with the given name, if present. */
+  void remove(@NonNull final String snapshotName) {
+    final Map<String, SnapshotDataItem> items =
+        snapshotDataItems.get(SnapshotDataItem.namePrefix(snapshotName));
+    if (items != null && items.containsKey(SnapshotDataItem.nameSuffix(snapshotName))) {
+      resolveDeltasOf(snapshotName);
+      unindexDelta(items.remove(SnapshotDataItem.nameSuffix(snapshotName)));
+    }
+  }
+
+  /** The deltas against an item that is replaced or removed are rebuilt before it is gone. */
+  private void resolveDeltasOf(final String name) {
+    final Set<String> deltas = deltasByBase.remove(name);
+    if (deltas != null) {
+      for (String deltaName : deltas) {
+        getRawItem(deltaName)
+            .ifPresent(
+                item -> itemsOf(item.getNamePrefix()).put(item.getNameSuffix(), resolve(item)));
+      }
+    }
+    deltaBases.remove(name);
+  }
+
+  private void indexDelta(final SnapshotDataItem item) {
+    if (item.getDeltaBase() != null) {
+      deltasByBase
+          .computeIfAbsent(item.getDeltaBase(), base -> new HashSet<>())
+          .add(item.getName());
+    }
+  }
+
+  private void unindexDelta(final SnapshotDataItem item) {
+    final Set<String> deltas =
+        item.getDeltaBase() == null ? null : deltasByBase.get(item.getDeltaBase());
+    if (deltas != null) {
+      deltas.remove(item.getName());
+      if (deltas.isEmpty()) {
+        deltasByBase.remove(item.getDeltaBase());
+      }
+    }
+  }
+
+  /** Adds the given item unless an item with the same name is already present. */
+  public void addIfAbsent(@NonNull final SnapshotDataItem snapshotDataItem) {
+    if (itemsOf(snapshotDataItem.getNamePrefix())
+            .putIfAbsent(snapshotDataItem.getNameSuffix(), snapshotDataItem)
+        == null) {
+      indexDelta(snapshotDataItem);
+    }
+  }
+
+  /** A copy sharing the immutable items and parsed delta bases with this data. */
+  SnapshotData copy() {
+    final SnapshotData copy = new SnapshotData();
+    snapshotDataItems.forEach((prefix, items) -> copy.itemsOf(prefix).putAll(items));
+    copy.deltaBases.putAll(deltaBases);
+    deltasByBase.forEach((base, deltas) -> copy.deltasByBase.put(base, new HashSet<>(deltas)));
+    return copy;
+  }
+
+  private Map<String, SnapshotDataItem> itemsOf(String namePrefix) {
+    return snapshotDataItems.computeIfAbsent(
+        namePrefix, prefix -> new TreeMap<>(SnapshotData::compareSuffixes));
   }
 
   public Optional<SnapshotDataItem> getItemByName(@NonNull final String snapshotName) {
-    return Optional.ofNullable(snapshotDataItems.get(snapshotName));
+    return getItem(
+        SnapshotDataItem.namePrefix(snapshotName), SnapshotDataItem.nameSuffix(snapshotName));
+  }
+
+  /** The item with the given name, rebuilt from its base if it is stored as a delta. */
+  public Optional<SnapshotDataItem> getItem(
+      final String className, @NonNull final String methodName) {
+    return getRawItem(className, methodName).map(this::resolve);
+  }
+
+  /** The item with the given name as stored, which may be a {@link SnapshotDelta}. */
+  Optional<SnapshotDataItem> getRawItem(@NonNull final String snapshotName) {
+    return getRawItem(
+        SnapshotDataItem.namePrefix(snapshotName), SnapshotDataItem.nameSuffix(snapshotName));
+  }
+
+  private Optional<SnapshotDataItem> getRawItem(
+      final String className, @NonNull final String methodName) {
+    final Map<String, SnapshotDataItem> items = snapshotDataItems.get(className);
+    return Optional.ofNullable(items == null ? null : items.get(methodName));
+  }
+
+  private SnapshotDataItem resolve(final SnapshotDataItem item) {
+    if (item.getDeltaBase() == null) {
+      return item;
+    }
+    return SnapshotDelta.decode(item, deltaBases.computeIfAbsent(item.getDeltaBase(), this::parse));
+  }
+
+  private JsonNode parse(final String baseName) {
+    final SnapshotDataItem base =
+        getRawItem(baseName)
+            .orElseThrow(
+                () -> new SnapshotMatchException("Snapshot delta base " + baseName + " not found"));
+    try {
+      return SnapshotDelta.parse(base);
+    } catch (IOException e) {
+      throw new SnapshotMatchException(
+          "Snapshot delta base " + baseName + " is not valid JSON: " + e.getMessage());
+    }
   }
 
   public List<SnapshotDataItem> getItems() {
-    return Collections.unmodifiableList(new ArrayList<>(snapshotDataItems.values()));
+    final List<SnapshotDataItem> items = new ArrayList<>();
+    for (Map<String, SnapshotDataItem> itemsOfPrefix : snapshotDataItems.values()) {
+      items.addAll(itemsOfPrefix.values());
+    }
+    return Collections.unmodifiableList(items);
+  }
+
+  /**
+   * Orders name prefixes as the full names {@code prefix + "." + suffix} would be ordered, e.g.
+   * {@code Foo$Bar} before {@code Foo}. Names without prefix come first.
+   */
+  static int comparePrefixes(final String a, final String b) {
+    if (a == null || b == null) {
+      return a == null ? (b == null ? 0 : -1) : 1;
+    }
+    final int length = Math.min(a.length(), b.length());
+    for (int i = 0; i < length; i++) {
+      if (a.charAt(i) != b.charAt(i)) {
+        return a.charAt(i) - b.charAt(i);
+      }
+    }
+    if (a.length() == b.length()) {
+      return 0;
+    }
+    final int order = a.length() < b.length() ? '.' - b.charAt(length) : a.charAt(length) - '.';
+    // "a" and "a.b" cannot be ordered by prefix alone; keep them apart anyway
+    return order != 0 ? order : a.length() - b.length();
+  }
+
+  /**
+   * Orders name suffixes by method name, then keyed snapshots {@code method[key]} after the plain
+   * snapshot of their method, so that all snapshots of a method are stored together. Numeric keys,
+   * like invocation indexes, come first and are ordered by value, other keys follow in string
+   * order; mixing both rules for one pair of keys would not be a total order.
+   */
+  static int compareSuffixes(final String a, final String b) {
+    final int aKey = keyStart(a);
+    final int bKey = keyStart(b);
+    final int length = Math.min(aKey, bKey);
+    for (int i = 0; i < length; i++) {
+      if (a.charAt(i) != b.charAt(i)) {
+        return a.charAt(i) - b.charAt(i);
+      }
+    }
+    if (aKey != bKey) {
+      return aKey - bKey;
+    }
+    if (aKey == a.length() || bKey == b.length()) {
+      return a.length() - b.length();
+    }
+    final String aRest = a.substring(aKey);
+    final String bRest = b.substring(bKey);
+    final boolean aNumeric = isNumericKey(aRest);
+    if (aNumeric != isNumericKey(bRest)) {
+      return aNumeric ? -1 : 1;
+    }
+    if (aNumeric && aRest.length() != bRest.length()) {
+      return aRest.length() - bRest.length();
+    }
+    return aRest.compareTo(bRest);
+  }
+
+  private static int keyStart(final String suffix) {
+    final int keyStart = suffix.indexOf('[');
+    return keyStart < 0 ? suffix.length() : keyStart;
+  }
+
+  private static boolean isNumericKey(final String key) {
+    for (int i = 1; i < key.length() - 1; i++) {
+      if (!Character.isDigit(key.charAt(i))) {
+        return false;
+      }
+    }
+    return key.length() > 2;
   }
 }
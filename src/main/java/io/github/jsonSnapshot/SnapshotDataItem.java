@@ -1,13 +1,23 @@
 package io.github.jsonSnapshot;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 
 import org.apache.commons.lang3.StringUtils;
 
+/**
+ * A single named snapshot. The data is kept as UTF-8 bytes, which takes half the heap of a {@code
+ * String} on Java 8 for the mostly ASCII JSON payloads; a {@code String} is only decoded when a
+ * matching strategy or error message asks for {@link #getData()}.
+ */
 @Value
 public class SnapshotDataItem implements Comparable<SnapshotDataItem> {
 
@@ -15,8 +25,47 @@ public class SnapshotDataItem implements Comparable<SnapshotDataItem> {
   private static final Pattern REGEX =
       Pattern.compile("(?<name>[^ =]*) *=+ *(?<data>\\[.*\\])[^\\]]*", REGEX_FLAGS);
 
-  private final String name;
-  private final String data;
+  private static final Pattern LINE_BREAK = Pattern.compile("\\R");
+
+  private static final char NAME_SEPARATOR = '.';
+
+  private static final char KEY_START = '[';
+
+  /** The class part of the name, interned so that all items of a class share it. */
+  @Getter(AccessLevel.PACKAGE)
+  private final String namePrefix;
+
+  /** The method part of the name, or the whole name if it has no class part. */
+  @Getter(AccessLevel.PACKAGE)
+  private final String nameSuffix;
+
+  /** The full name, joined from prefix and suffix by the first {@link #getName()}. */
+  @NonFinal
+  @Getter(AccessLevel.NONE)
+  private transient volatile String name;
+
+  @Getter(AccessLevel.NONE)
+  private final byte[] utf8Data;
+
+  /**
+   * The name of the entry this item is a {@link SnapshotDelta} of, in which case the data is the
+   * patch; {@code null} for items holding the full data.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private final String deltaBase;
+
+  /**
+   * The data with every line break as {@code \n}, computed by the first comparison; the data itself
+   * if it has no other line breaks.
+   */
+  @NonFinal
+  @Getter(AccessLevel.NONE)
+  private transient volatile byte[] normalizedData;
+
+  /** The {@link SnapshotPayloads#hash(byte[]) hash} of the data, computed when first needed. */
+  @NonFinal
+  @Getter(AccessLevel.NONE)
+  private transient volatile String payloadHash;
 
   public SnapshotDataItem(@NonNull final String rawDataString) {
     final Matcher matcher = REGEX.matcher(rawDataString);
@@ -28,17 +77,293 @@ public class SnapshotDataItem implements Comparable<SnapshotDataItem> {
     final String name = matcher.group("name");
     final String data = matcher.group("data");
 
-    this.name = StringUtils.trim(name);
-    this.data = StringUtils.trim(data);
+    this.namePrefix = namePrefix(StringUtils.trim(name));
+    this.nameSuffix = nameSuffix(StringUtils.trim(name));
+    this.utf8Data = toUtf8(StringUtils.trim(data));
+    this.deltaBase = null;
   }
 
   public SnapshotDataItem(String name, String data) {
-    this.name = StringUtils.trim(name);
-    this.data = StringUtils.trim(data);
+    this.namePrefix = namePrefix(StringUtils.trim(name));
+    this.nameSuffix = nameSuffix(StringUtils.trim(name));
+    this.utf8Data = toUtf8(StringUtils.trim(data));
+    this.deltaBase = null;
+  }
+
+  private SnapshotDataItem(
+      String namePrefix, String nameSuffix, byte[] utf8Data, String deltaBase) {
+    this.namePrefix = namePrefix;
+    this.nameSuffix = nameSuffix;
+    this.utf8Data = utf8Data;
+    this.deltaBase = deltaBase;
+  }
+
+  /** An item with the given, already trimmed, UTF-8 data, which must not be modified anymore. */
+  static SnapshotDataItem ofUtf8Data(@NonNull String name, @NonNull byte[] utf8Data) {
+    return new SnapshotDataItem(namePrefix(name), nameSuffix(name), utf8Data, null);
+  }
+
+  /** An item with the data of the payload blob with the given hash. */
+  static SnapshotDataItem ofPayload(
+      @NonNull String name, @NonNull String hash, @NonNull byte[] utf8Data) {
+    final SnapshotDataItem item = ofUtf8Data(name, utf8Data);
+    item.payloadHash = hash;
+    return item;
+  }
+
+  /** An item stored as a JSON patch against the entry named {@code deltaBase}. */
+  static SnapshotDataItem ofDelta(
+      @NonNull String name, @NonNull String deltaBase, @NonNull byte[] utf8Patch) {
+    return new SnapshotDataItem(namePrefix(name), nameSuffix(name), utf8Patch, deltaBase);
+  }
+
+  /** This item with its data shared with all loaded items of the same content. */
+  SnapshotDataItem withSharedData() {
+    return new SnapshotDataItem(
+        namePrefix, nameSuffix, SnapshotPayloads.intern(utf8Data), deltaBase);
+  }
+
+  static String namePrefix(@NonNull String name) {
+    int separator = separatorIndex(name);
+    return separator < 0 ? null : name.substring(0, separator).intern();
+  }
+
+  static String nameSuffix(@NonNull String name) {
+    return name.substring(separatorIndex(name) + 1);
+  }
+
+  /** The last '.' before the key of a sub-snapshot name like {@code a.Foo.test[key.1]}. */
+  private static int separatorIndex(String name) {
+    int keyStart = name.indexOf(KEY_START);
+    return name.lastIndexOf(NAME_SEPARATOR, keyStart < 0 ? name.length() : keyStart);
+  }
+
+  public String getName() {
+    String joined = name;
+    if (joined == null) {
+      joined = namePrefix == null ? nameSuffix : namePrefix + NAME_SEPARATOR + nameSuffix;
+      name = joined;
+    }
+    return joined;
+  }
+
+  private static byte[] toUtf8(String data) {
+    return data == null ? null : data.getBytes(StandardCharsets.UTF_8);
+  }
+
+  public String getData() {
+    return utf8Data == null ? null : new String(utf8Data, StandardCharsets.UTF_8);
+  }
+
+  /** The size of the data in UTF-8 bytes. */
+  int getDataSize() {
+    return utf8Data == null ? 0 : utf8Data.length;
+  }
+
+  /** The hash the data is stored under as a deduplicated payload. */
+  String getPayloadHash() {
+    String hash = payloadHash;
+    if (hash == null) {
+      hash = SnapshotPayloads.hash(utf8Data);
+      payloadHash = hash;
+    }
+    return hash;
+  }
+
+  /** The data itself, not a copy; callers must not modify it. */
+  byte[] getUtf8Data() {
+    return utf8Data;
   }
 
   public String asRawData() {
-    return name + "=" + data;
+    if (deltaBase != null) {
+      return getName() + "=" + SnapshotDelta.DELTA_PREFIX + deltaBase + " " + getData();
+    }
+    return getName() + "=" + getData();
+  }
+
+  /**
+   * The value as stored in a snapshot file, i.e. the part of {@link #asRawData()} after the name;
+   * the data itself, not a copy, for items that are not deltas.
+   */
+  byte[] getStoredValue() {
+    if (deltaBase == null) {
+      return utf8Data;
+    }
+    final byte[] prefix =
+        (SnapshotDelta.DELTA_PREFIX + deltaBase + " ").getBytes(StandardCharsets.UTF_8);
+    final byte[] value = Arrays.copyOf(prefix, prefix.length + utf8Data.length);
+    System.arraycopy(utf8Data, 0, value, prefix.length, utf8Data.length);
+    return value;
+  }
+
+  /**
+   * Compares the data with the trimmed {@code actual} string, treating every line break on both
+   * sides as {@code \n}. The stored side is normalized once and kept; the actual side is normalized
+   * while walking, so it is not copied. Malformed UTF-8 in the stored data is compared decoded.
+   */
+  public boolean dataEqualsIgnoringLineBreaks(@NonNull final String actual) {
+    int start = 0;
+    int end = actual.length();
+    while (start < end && actual.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && actual.charAt(end - 1) <= ' ') {
+      end--;
+    }
+
+    final byte[] expected = normalizedData();
+    int i = 0;
+    char pendingLowSurrogate = 0;
+    int j = start;
+    while (j < end) {
+      char e;
+      if (pendingLowSurrogate != 0) {
+        e = pendingLowSurrogate;
+        pendingLowSurrogate = 0;
+      } else {
+        if (i >= expected.length) {
+          return false;
+        }
+        final int length = sequenceLength(expected, i);
+        final int b = expected[i];
+        if (length < 0) {
+          return decodedEqualsIgnoringLineBreaks(actual.substring(start, end));
+        } else if (length == 1) {
+          e = (char) b;
+        } else if (length == 2) {
+          e = (char) (((b & 0x1F) << 6) | (expected[i + 1] & 0x3F));
+        } else if (length == 3) {
+          e =
+              (char)
+                  (((b & 0x0F) << 12)
+                      | ((expected[i + 1] & 0x3F) << 6)
+                      | (expected[i + 2] & 0x3F));
+        } else {
+          final int codePoint =
+              ((b & 0x07) << 18)
+                  | ((expected[i + 1] & 0x3F) << 12)
+                  | ((expected[i + 2] & 0x3F) << 6)
+                  | (expected[i + 3] & 0x3F);
+          e = Character.highSurrogate(codePoint);
+          pendingLowSurrogate = Character.lowSurrogate(codePoint);
+        }
+        i += length;
+      }
+
+      char c = actual.charAt(j++);
+      if (c == '\r' && j < end && actual.charAt(j) == '\n') {
+        j++;
+      }
+      if (isLineBreak(c)) {
+        c = '\n';
+      }
+
+      if (e != c) {
+        return false;
+      }
+    }
+    return pendingLowSurrogate == 0 && i == expected.length;
+  }
+
+  private byte[] normalizedData() {
+    byte[] normalized = normalizedData;
+    if (normalized == null) {
+      normalized = normalizeLineBreaks(utf8Data);
+      normalizedData = normalized;
+    }
+    return normalized;
+  }
+
+  /**
+   * The UTF-8 data with every line break as {@code \n}. The multi byte line breaks cannot start
+   * inside another character of valid UTF-8, so the bytes are replaced without decoding them.
+   */
+  private static byte[] normalizeLineBreaks(final byte[] data) {
+    byte[] normalized = null;
+    int length = 0;
+    for (int i = 0; i < data.length; i++) {
+      final int lineBreakLength = lineBreakLength(data, i);
+      if (lineBreakLength == 0 || (lineBreakLength == 1 && data[i] == '\n')) {
+        if (normalized != null) {
+          normalized[length++] = data[i];
+        }
+        continue;
+      }
+      if (normalized == null) {
+        normalized = Arrays.copyOf(data, data.length);
+        length = i;
+      }
+      normalized[length++] = '\n';
+      i += lineBreakLength - 1;
+    }
+    return normalized == null ? data : Arrays.copyOf(normalized, length);
+  }
+
+  /** The number of bytes of the line break at {@code i}, 0 if there is none. */
+  private static int lineBreakLength(final byte[] data, final int i) {
+    switch (data[i]) {
+      case '\r':
+        return i + 1 < data.length && data[i + 1] == '\n' ? 2 : 1;
+      case '\n':
+      case '\u000B':
+      case '\f':
+        return 1;
+      case (byte) 0xC2:
+        return i + 1 < data.length && data[i + 1] == (byte) 0x85 ? 2 : 0;
+      case (byte) 0xE2:
+        return i + 2 < data.length
+                && data[i + 1] == (byte) 0x80
+                && (data[i + 2] == (byte) 0xA8 || data[i + 2] == (byte) 0xA9)
+            ? 3
+            : 0;
+      default:
+        return 0;
+    }
+  }
+
+  /** The length of the UTF-8 sequence at {@code i}, or -1 if it is truncated or malformed. */
+  private static int sequenceLength(final byte[] bytes, final int i) {
+    final int b = bytes[i];
+    final int length;
+    if (b >= 0) {
+      return 1;
+    } else if ((b & 0xE0) == 0xC0) {
+      length = 2;
+    } else if ((b & 0xF0) == 0xE0) {
+      length = 3;
+    } else if ((b & 0xF8) == 0xF0) {
+      length = 4;
+    } else {
+      return -1;
+    }
+    if (i + length > bytes.length) {
+      return -1;
+    }
+    for (int k = i + 1; k < i + length; k++) {
+      if ((bytes[k] & 0xC0) != 0x80) {
+        return -1;
+      }
+    }
+    return length;
+  }
+
+  private boolean decodedEqualsIgnoringLineBreaks(final String trimmedActual) {
+    return LINE_BREAK
+        .matcher(getData())
+        .replaceAll("\n")
+        .equals(LINE_BREAK.matcher(trimmedActual).replaceAll("\n"));
+  }
+
+  /** The single character line breaks matched by the {@code \\R} regex. */
+  private static boolean isLineBreak(final char c) {
+    return c == '\n'
+        || c == '\r'
+        || c == '\u000B'
+        || c == '\f'
+        || c == '\u0085'
+        || c == '\u2028'
+        || c == '\u2029';
   }
 
   @Override
@@ -46,6 +371,14 @@ public class SnapshotDataItem implements Comparable<SnapshotDataItem> {
     if (o == null) {
       return 1;
     }
-    return this.name.compareTo(o.name);
+    final int prefixOrder = SnapshotData.comparePrefixes(this.namePrefix, o.namePrefix);
+    return prefixOrder != 0
+        ? prefixOrder
+        : SnapshotData.compareSuffixes(this.nameSuffix, o.nameSuffix);
+  }
+
+  @Override
+  public String toString() {
+    return "SnapshotDataItem(name=" + getName() + ", data=" + getData() + ")";
   }
 }
@@ -0,0 +1,166 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Stores a snapshot as a JSON patch (RFC 6902 {@code add}, {@code remove} and {@code replace}
+ * operations) against a base entry of the same file, written as {@code name=@delta:<base> [patch]}.
+ * A snapshot is only stored as delta if the patch is smaller than the snapshot and rebuilding it
+ * reproduces the snapshot byte for byte with the default pretty printer.
+ */
+final class SnapshotDelta {
+
+  static final String DELTA_PREFIX = "@delta:";
+
+  static final Pattern DELTA =
+      Pattern.compile(
+          "(?<name>[^ =]*) *= *" + DELTA_PREFIX + "(?<base>[^ =\\s]+) *(?<patch>\\[.*\\])\\s*",
+          Pattern.MULTILINE + Pattern.DOTALL);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private SnapshotDelta() {}
+
+  /** The item as a delta against {@code base}, or the item itself if a delta does not pay off. */
+  static SnapshotDataItem encode(SnapshotDataItem item, SnapshotDataItem base) {
+    if (base.getDeltaBase() != null || base.getName().equals(item.getName())) {
+      return item;
+    }
+    try {
+      JsonNode baseTree = parse(base);
+      ArrayNode patch = MAPPER.createArrayNode();
+      diff("", baseTree, MAPPER.readTree(item.getUtf8Data()), patch);
+
+      byte[] utf8Patch = MAPPER.writeValueAsBytes(patch);
+      if (utf8Patch.length >= item.getDataSize()
+          || !Arrays.equals(print(apply(baseTree, patch)), item.getUtf8Data())) {
+        return item;
+      }
+      return SnapshotDataItem.ofDelta(item.getName(), base.getName(), utf8Patch);
+    } catch (IOException e) {
+      // not JSON, e.g. written by a custom serialize function
+      return item;
+    }
+  }
+
+  /** Rebuilds the full snapshot from a delta and the parsed base, which is not modified. */
+  static SnapshotDataItem decode(SnapshotDataItem delta, JsonNode baseTree) {
+    try {
+      JsonNode patch = MAPPER.readTree(delta.getUtf8Data());
+      return SnapshotDataItem.ofUtf8Data(delta.getName(), print(apply(baseTree, patch)));
+    } catch (IOException | RuntimeException e) {
+      throw new SnapshotMatchException(
+          "Unable to rebuild snapshot " + delta.getName() + " from its base: " + e.getMessage());
+    }
+  }
+
+  static JsonNode parse(SnapshotDataItem base) throws IOException {
+    return MAPPER.readTree(base.getUtf8Data());
+  }
+
+  private static byte[] print(JsonNode tree) throws IOException {
+    return MAPPER.writer(SnapshotMatcher.buildDefaultPrettyPrinter()).writeValueAsBytes(tree);
+  }
+
+  private static void diff(String path, JsonNode source, JsonNode target, ArrayNode patch) {
+    if (source.equals(target)) {
+      return;
+    }
+    if (source.isObject() && target.isObject() && keepsFieldOrder(source, target)) {
+      for (Iterator<String> names = source.fieldNames(); names.hasNext(); ) {
+        String name = names.next();
+        if (target.has(name)) {
+          diff(path + "/" + escape(name), source.get(name), target.get(name), patch);
+        } else {
+          patch.addObject().put("op", "remove").put("path", path + "/" + escape(name));
+        }
+      }
+      for (Iterator<String> names = target.fieldNames(); names.hasNext(); ) {
+        String name = names.next();
+        if (!source.has(name)) {
+          patch
+              .addObject()
+              .put("op", "add")
+              .put("path", path + "/" + escape(name))
+              .set("value", target.get(name));
+        }
+      }
+    } else if (source.isArray() && target.isArray() && source.size() == target.size()) {
+      for (int i = 0; i < source.size(); i++) {
+        diff(path + "/" + i, source.get(i), target.get(i), patch);
+      }
+    } else {
+      patch.addObject().put("op", "replace").put("path", path).set("value", target);
+    }
+  }
+
+  /** Whether removing and appending fields turns the source into the target's field order. */
+  private static boolean keepsFieldOrder(JsonNode source, JsonNode target) {
+    List<String> patched = new ArrayList<>();
+    source.fieldNames().forEachRemaining(name -> addIf(target.has(name), name, patched));
+    target.fieldNames().forEachRemaining(name -> addIf(!source.has(name), name, patched));
+    List<String> expected = new ArrayList<>();
+    target.fieldNames().forEachRemaining(expected::add);
+    return patched.equals(expected);
+  }
+
+  private static void addIf(boolean condition, String name, List<String> names) {
+    if (condition) {
+      names.add(name);
+    }
+  }
+
+  private static JsonNode apply(JsonNode baseTree, JsonNode patch) {
+    JsonNode root = baseTree.deepCopy();
+    for (JsonNode operation : patch) {
+      String op = operation.get("op").asText();
+      String path = operation.get("path").asText();
+      JsonNode value = operation.get("value");
+      if (path.isEmpty()) {
+        root = value;
+        continue;
+      }
+      int last = path.lastIndexOf('/');
+      JsonNode parent = root.at(path.substring(0, last));
+      String token = unescape(path.substring(last + 1));
+      if (parent.isObject()) {
+        if ("remove".equals(op)) {
+          ((ObjectNode) parent).remove(token);
+        } else {
+          ((ObjectNode) parent).set(token, value);
+        }
+      } else if (parent.isArray()) {
+        ArrayNode array = (ArrayNode) parent;
+        int index = "-".equals(token) ? array.size() : Integer.parseInt(token);
+        if ("remove".equals(op)) {
+          array.remove(index);
+        } else if ("add".equals(op)) {
+          array.insert(index, value);
+        } else {
+          array.set(index, value);
+        }
+      } else {
+        throw new IllegalArgumentException("Invalid patch path " + path);
+      }
+    }
+    return root;
+  }
+
+  private static String escape(String name) {
+    return name.replace("~", "~0").replace("/", "~1");
+  }
+
+  private static String unescape(String token) {
+    return token.replace("~1", "/").replace("~0", "~");
+  }
+}
@@ -0,0 +1,238 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.util.Instantiatable;
+
+/**
+ * Snapshots stored as {@code @digest:sha256=<hex> bytes=<length> elements=<count>} instead of their
+ * content, see {@link Snapshot#asDigest(boolean)}. With the default JSON serialization the output
+ * is streamed through the digest and never held in memory; the element count is the number of
+ * elements or entries of the {@code expect} arguments. Other serialize functions are digested from
+ * their string and have no element count.
+ */
+final class SnapshotDigest {
+
+  static final String DIGEST_PREFIX = "@digest:";
+
+  private static final byte[] DIGEST_PREFIX_BYTES = DIGEST_PREFIX.getBytes(StandardCharsets.UTF_8);
+
+  /** A digest entry of a snapshot file, {@code <name>=@digest:...}. */
+  static final Pattern DIGEST =
+      Pattern.compile("(?<name>[^ =]*) *= *(?<digest>" + DIGEST_PREFIX + "[^\\r\\n]*?)\\s*");
+
+  private SnapshotDigest() {}
+
+  /** The stored form of the snapshot of {@code objects}. */
+  static String of(Function<Object, String> serializeFunction, Object[] objects) {
+    DigestWriter digest = new DigestWriter();
+    if (serializeFunction instanceof DefaultJsonFunction) {
+      CountingPrettyPrinter counting =
+          new CountingPrettyPrinter(SnapshotMatcher.buildDefaultPrettyPrinter());
+      ((DefaultJsonFunction) serializeFunction).write(objects, digest, counting);
+      return digest.toDigest(counting.elements);
+    }
+    digest.update(serializeFunction.apply(objects).getBytes(StandardCharsets.UTF_8));
+    return digest.toDigest(-1);
+  }
+
+  /** Whether the item is a digest, from the first bytes of its data without decoding it. */
+  static boolean isDigest(SnapshotDataItem item) {
+    final byte[] data = item.getUtf8Data();
+    if (data == null || data.length < DIGEST_PREFIX_BYTES.length) {
+      return false;
+    }
+    for (int i = 0; i < DIGEST_PREFIX_BYTES.length; i++) {
+      if (data[i] != DIGEST_PREFIX_BYTES[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Feeds the UTF-8 encoding of the characters written to a SHA-256 digest. */
+  private static class DigestWriter extends Writer {
+
+    private final MessageDigest digest;
+
+    private final byte[] buffer = new byte[8192];
+
+    private int buffered;
+
+    private long bytes;
+
+    /** A high surrogate whose low surrogate is still to be written, or 0. */
+    private char highSurrogate;
+
+    DigestWriter() {
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+      for (int i = offset; i < offset + length; i++) {
+        char c = chars[i];
+        if (buffered > buffer.length - 4) {
+          flushBuffer();
+        }
+        if (highSurrogate != 0) {
+          int codePoint = Character.toCodePoint(highSurrogate, c);
+          highSurrogate = 0;
+          put(0xF0 | (codePoint >> 18));
+          put(0x80 | ((codePoint >> 12) & 0x3F));
+          put(0x80 | ((codePoint >> 6) & 0x3F));
+          put(0x80 | (codePoint & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+          highSurrogate = c;
+        } else if (c < 0x80) {
+          put(c);
+        } else if (c < 0x800) {
+          put(0xC0 | (c >> 6));
+          put(0x80 | (c & 0x3F));
+        } else {
+          put(0xE0 | (c >> 12));
+          put(0x80 | ((c >> 6) & 0x3F));
+          put(0x80 | (c & 0x3F));
+        }
+      }
+    }
+
+    private void put(int b) {
+      buffer[buffered++] = (byte) b;
+    }
+
+    private void flushBuffer() {
+      update(buffer, buffered);
+      buffered = 0;
+    }
+
+    void update(byte[] data) {
+      update(data, data.length);
+    }
+
+    private void update(byte[] data, int length) {
+      digest.update(data, 0, length);
+      bytes += length;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+    String toDigest(long elements) {
+      flushBuffer();
+      StringBuilder result =
+          new StringBuilder(DIGEST_PREFIX)
+              .append("sha256=")
+              .append(SnapshotPayloads.toHex(digest.digest()))
+              .append(" bytes=")
+              .append(bytes);
+      if (elements >= 0) {
+        result.append(" elements=").append(elements);
+      }
+      return result.toString();
+    }
+  }
+
+  /**
+   * Counts the elements and entries of the values inside the root array of {@code expect}
+   * arguments, from the counts Jackson passes to the pretty printer anyway.
+   */
+  private static class CountingPrettyPrinter
+      implements PrettyPrinter, Instantiatable<PrettyPrinter> {
+
+    private final PrettyPrinter delegate;
+
+    private int depth;
+
+    private long elements;
+
+    @SuppressWarnings("unchecked")
+    CountingPrettyPrinter(PrettyPrinter delegate) {
+      this.delegate =
+          delegate instanceof Instantiatable
+              ? ((Instantiatable<? extends PrettyPrinter>) delegate).createInstance()
+              : delegate;
+    }
+
+    @Override
+    public PrettyPrinter createInstance() {
+      return this;
+    }
+
+    @Override
+    public void writeRootValueSeparator(JsonGenerator gen) throws IOException {
+      delegate.writeRootValueSeparator(gen);
+    }
+
+    @Override
+    public void writeStartObject(JsonGenerator gen) throws IOException {
+      depth++;
+      delegate.writeStartObject(gen);
+    }
+
+    @Override
+    public void writeEndObject(JsonGenerator gen, int nrOfEntries) throws IOException {
+      countEnd(nrOfEntries);
+      delegate.writeEndObject(gen, nrOfEntries);
+    }
+
+    @Override
+    public void writeObjectEntrySeparator(JsonGenerator gen) throws IOException {
+      delegate.writeObjectEntrySeparator(gen);
+    }
+
+    @Override
+    public void writeObjectFieldValueSeparator(JsonGenerator gen) throws IOException {
+      delegate.writeObjectFieldValueSeparator(gen);
+    }
+
+    @Override
+    public void writeStartArray(JsonGenerator gen) throws IOException {
+      depth++;
+      delegate.writeStartArray(gen);
+    }
+
+    @Override
+    public void writeEndArray(JsonGenerator gen, int nrOfValues) throws IOException {
+      countEnd(nrOfValues);
+      delegate.writeEndArray(gen, nrOfValues);
+    }
+
+    @Override
+    public void writeArrayValueSeparator(JsonGenerator gen) throws IOException {
+      delegate.writeArrayValueSeparator(gen);
+    }
+
+    @Override
+    public void beforeArrayValues(JsonGenerator gen) throws IOException {
+      delegate.beforeArrayValues(gen);
+    }
+
+    @Override
+    public void beforeObjectEntries(JsonGenerator gen) throws IOException {
+      delegate.beforeObjectEntries(gen);
+    }
+
+    private void countEnd(int values) {
+      if (depth == 2) {
+        elements += values;
+      }
+      depth--;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package io.github.jsonSnapshot;
+
+import java.lang.reflect.Method;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Gives every invocation of a {@code @ParameterizedTest}, {@code @RepeatedTest} or other test
+ * template its own snapshot: with this extension registered, {@link SnapshotMatcher#expect(Object,
+ * Object...)} stores the snapshot of an invocation as {@code <class>.<method>[<index>]}, where the
+ * index is the one JUnit numbers the invocations with. Dynamic tests of a {@code @TestFactory} get
+ * no lifecycle callbacks of their own and need {@link SnapshotMatcher#expectWithKey(String, Object,
+ * Object...)} instead; their snapshots belong to the factory method, which this extension tells
+ * {@link SnapshotMatcher}, as it is not on the stack when they run. A session the test class did
+ * not close is closed after all its tests, so that deferred snapshots are written.
+ *
+ * <pre>
+ * &#64;ExtendWith(SnapshotExtension.class)
+ * class MyTest { ... }
+ * </pre>
+ */
+public class SnapshotExtension implements BeforeEachCallback, AfterEachCallback, AfterAllCallback {
+
+  private static final Pattern INVOCATION =
+      Pattern.compile("\\[test-template-invocation:#(\\d+)]$");
+
+  private static final ThreadLocal<String> invocationKey = new ThreadLocal<>();
+
+  private static final ThreadLocal<Method> testMethod = new ThreadLocal<>();
+
+  @Override
+  public void beforeEach(ExtensionContext context) {
+    testMethod.set(context.getRequiredTestMethod());
+    Matcher matcher = INVOCATION.matcher(context.getUniqueId());
+    if (matcher.find()) {
+      invocationKey.set(matcher.group(1));
+    } else {
+      invocationKey.remove();
+    }
+  }
+
+  @Override
+  public void afterEach(ExtensionContext context) {
+    invocationKey.remove();
+    testMethod.remove();
+  }
+
+  /**
+   * Writes the pending snapshots of a session the test class started but did not close with {@link
+   * SnapshotMatcher#validateSnapshots()}.
+   */
+  @Override
+  public void afterAll(ExtensionContext context) {
+    SnapshotMatcher.closeAbandonedSession(context.getRequiredTestClass());
+  }
+
+  /** The key of the test template invocation running on this thread, if any. */
+  static String currentInvocationKey() {
+    return invocationKey.get();
+  }
+
+  /** The test, test template or test factory method running on this thread, if any. */
+  static Method currentTestMethod() {
+    return testMethod.get();
+  }
+}
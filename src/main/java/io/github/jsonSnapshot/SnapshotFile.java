@@ -1,58 +1,275 @@
 package io.github.jsonSnapshot;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 
 import org.apache.commons.lang3.StringUtils;
 import org.assertj.core.util.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class SnapshotFile {
 
+  private static Logger log = LoggerFactory.getLogger(SnapshotFile.class);
+
   private static final Charset UTF_8 = StandardCharsets.UTF_8;
 
   private static final String SPLIT_REGEXP = "\\R\\R\\R";
 
-  private static final String JOIN_STRING = "\n\n\n";
+  /** Appended to the snapshot file name for the file holding actual output of mismatches. */
+  static final String ACTUAL_EXTENSION = ".actual";
+
+  private final SnapshotStore store;
+
+  /** The file name within the store, e.g. {@code com/example/MyTest.snap}. */
+  private final String fileName;
+
+  /** The store, if it is the file system store, which has a cache and a bundle of parsed files. */
+  private final FileSystemSnapshotStore files;
+
+  private final String pathAndfileName;
+
+  /** The parsed file, {@code null} until first needed in read-only mode. */
+  private volatile SnapshotData storedSnapshots;
+
+  private final Object loadLock = new Object();
+
+  /**
+   * In update mode, mismatching and new snapshots are only changed in memory and written once by
+   * {@link #flush()}.
+   */
+  @Getter private final boolean updateMode;
+
+  private boolean dirty;
+
+  private int createdCount;
+
+  private int updatedCount;
+
+  private int unchangedCount;
+
+  /** Whether entries are written as references to content-addressed payloads. */
+  private final boolean deduplicate;
+
+  private final SnapshotPayloads payloads;
+
+  /**
+   * Whether the actual output of mismatching snapshots is written to a {@link #ACTUAL_EXTENSION}
+   * side file, with only a preview of it in the exception.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private final boolean writeActual;
 
-  private String pathAndfileName;
+  /**
+   * In read-only mode the file is loaded lazily, nothing is ever written, and missing files or
+   * entries fail instead of being created.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private final boolean readOnly;
 
-  @Getter private SnapshotData storedSnapshots;
+  /** Actual output of mismatches since the last {@link #flush()}, by snapshot name. */
+  private final Map<String, SnapshotDataItem> pendingActual = new HashMap<>();
+
+  /** Snapshots matched since the last {@link #flush()}, whose earlier actual output is stale. */
+  private final Set<String> matchedNames = new HashSet<>();
+
+  /** Whether actual output is kept, as configured or since a digest mismatch dumped some. */
+  private boolean keepsActual;
+
+  /** Whether the actual side file exists, checked once and set once it is written. */
+  private Boolean actualFileExists;
+
+  /** Whether the file did not exist when loaded, set before the loaded data is published. */
+  private boolean missing;
+
+  /** Snapshots removed by {@link #remove(Collection)}, not to be merged back from the file. */
+  private final Set<String> removedNames = new HashSet<>();
+
+  String getFileName() {
+    return pathAndfileName;
+  }
 
   SnapshotFile(String filePath, String fileName) throws IOException {
+    this(new FileSystemSnapshotStore(filePath), fileName, SnapshotFileOptions.DEFAULT);
+  }
 
-    this.pathAndfileName = filePath + fileName;
-    this.storedSnapshots = new SnapshotData();
+  SnapshotFile(SnapshotStore store, String fileName, SnapshotFileOptions options)
+      throws IOException {
 
-    try {
-      loadSnapshotFile();
-    } catch (IOException e) {
-      createFile(this.pathAndfileName);
+    if (options.isUpdateMode() && options.isReadOnly()) {
+      throw new SnapshotMatchException("Snapshots cannot be updated in read-only mode");
+    }
+    this.store = store;
+    this.readOnly = options.isReadOnly();
+    this.writeActual = options.isWriteActual() && !readOnly;
+    this.keepsActual = writeActual;
+    this.fileName = fileName;
+    this.files = store instanceof FileSystemSnapshotStore ? (FileSystemSnapshotStore) store : null;
+    this.pathAndfileName = files == null ? fileName : files.getFilePath() + fileName;
+    this.updateMode = options.isUpdateMode();
+    this.deduplicate = options.isDeduplicate();
+    this.payloads = new SnapshotPayloads(store);
+
+    if (!readOnly) {
+      storedSnapshots = load();
     }
   }
 
-  private void loadSnapshotFile() throws IOException {
+  public SnapshotData getStoredSnapshots() {
+    SnapshotData loaded = storedSnapshots;
+    if (loaded == null) {
+      // entries of a batch may be the first to need a read-only file, in parallel
+      synchronized (loadLock) {
+        loaded = storedSnapshots;
+        if (loaded == null) {
+          try {
+            loaded = load();
+          } catch (IOException e) {
+            throw new SnapshotMatchException(
+                "Unable to read snapshot file " + pathAndfileName + ": " + e);
+          }
+          storedSnapshots = loaded;
+        }
+      }
+    }
+    return loaded;
+  }
 
-    Path path = Paths.get(this.pathAndfileName);
+  /** Reads the file, to be published once complete. */
+  private SnapshotData load() throws IOException {
+    final Optional<SnapshotData> preloaded =
+        files == null ? Optional.empty() : files.loadParsed(fileName);
+    if (preloaded.isPresent()) {
+      return preloaded.get();
+    }
+    final SnapshotData loaded = new SnapshotData();
+    loadSnapshotFile(loaded);
+    return loaded;
+  }
+
+  private void loadSnapshotFile(SnapshotData loaded) throws IOException {
+
+    final long start = System.nanoTime();
+    final Optional<byte[]> content = store.load(fileName);
+    if (!content.isPresent()) {
+      missing = true;
+      return;
+    }
+    // parsing needs no lock
+    parseSnapshotItems(content.get()).forEach(loaded::add);
+    if (files != null) {
+      files.cache(fileName, loaded);
+    }
+
+    final SnapshotReport report = SnapshotReport.active();
+    if (report != null) {
+      report.recordFileLoad(pathAndfileName, content.get().length, System.nanoTime() - start);
+    }
+  }
 
-    String lines = new String(Files.readAllBytes(path), UTF_8);
-    String[] rawSnapshotItems = split(lines);
+  private Stream<SnapshotDataItem> parseSnapshotItems(byte[] content) {
+    return parse(content, payloads, pathAndfileName);
+  }
 
-    Stream.of(rawSnapshotItems)
+  /**
+   * Parses the content of a snapshot file, reading referenced payloads through {@code payloads}.
+   * Nothing is written, cached or reported.
+   */
+  static Stream<SnapshotDataItem> parse(
+      byte[] content, SnapshotPayloads payloads, String pathAndfileName) {
+    if (SnapshotFileFormat.isVersion2(content)) {
+      return SnapshotFileFormat.records(content)
+          .stream()
+          .map(record -> parseRecord(record, content, payloads, pathAndfileName));
+    }
+    String[] rawSnapshotItems = split(new String(content, UTF_8));
+
+    return Stream.of(rawSnapshotItems)
         .filter(StringUtils::isNotBlank)
-        .map(SnapshotDataItem::new)
-        .forEach(storedSnapshots::add);
+        .map(rawSnapshotItem -> parseSnapshotItem(rawSnapshotItem, payloads));
+  }
+
+  private static SnapshotDataItem parseSnapshotItem(
+      String rawSnapshotItem, SnapshotPayloads payloads) {
+    Matcher delta = SnapshotDelta.DELTA.matcher(rawSnapshotItem);
+    if (delta.matches()) {
+      return SnapshotDataItem.ofDelta(
+          delta.group("name"), delta.group("base"), delta.group("patch").getBytes(UTF_8));
+    }
+    Matcher reference = SnapshotPayloads.REFERENCE.matcher(rawSnapshotItem);
+    if (reference.matches()) {
+      return readPayload(reference.group("name"), reference.group("hash"), payloads);
+    }
+    Matcher digest = SnapshotDigest.DIGEST.matcher(rawSnapshotItem);
+    if (digest.matches()) {
+      return new SnapshotDataItem(digest.group("name"), digest.group("digest"));
+    }
+    return new SnapshotDataItem(rawSnapshotItem).withSharedData();
+  }
+
+  private static SnapshotDataItem parseRecord(
+      SnapshotFileFormat.Record record,
+      byte[] content,
+      SnapshotPayloads payloads,
+      String pathAndfileName) {
+    final byte[] value = record.value(content);
+    if (!record.isFramed()) {
+      log.debug(
+          "Snapshot {} of {} was changed outside of the library, it is re-framed on the next write",
+          record.getName(),
+          pathAndfileName);
+    }
+    final String name = record.getName();
+    if (startsWith(value, SnapshotDelta.DELTA_PREFIX)) {
+      final String delta = new String(value, UTF_8);
+      final int baseEnd = delta.indexOf(' ');
+      if (baseEnd < 0) {
+        throw new SnapshotMatchException("Malformed delta snapshot " + name + ": " + delta);
+      }
+      return SnapshotDataItem.ofDelta(
+          name,
+          delta.substring(SnapshotDelta.DELTA_PREFIX.length(), baseEnd),
+          delta.substring(baseEnd + 1).trim().getBytes(UTF_8));
+    }
+    if (startsWith(value, SnapshotPayloads.REFERENCE_PREFIX)) {
+      final String hash =
+          new String(value, UTF_8).substring(SnapshotPayloads.REFERENCE_PREFIX.length()).trim();
+      return readPayload(name, hash, payloads);
+    }
+    return SnapshotDataItem.ofUtf8Data(name, value).withSharedData();
+  }
+
+  private static SnapshotDataItem readPayload(
+      String name, String hash, SnapshotPayloads payloads) {
+    return SnapshotDataItem.ofPayload(name, hash, payloads.read(hash));
+  }
+
+  private static boolean startsWith(byte[] value, String prefix) {
+    if (value.length < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (value[i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @VisibleForTesting
@@ -60,36 +277,243 @@ public class SnapshotFile {
     return lines.split(SPLIT_REGEXP);
   }
 
-  private File createFile(String fileName) {
+  public void push(@NonNull final SnapshotDataItem snapshot) {
+
+    checkWritable(Collections.singleton(snapshot));
+    getStoredSnapshots().add(snapshot);
+    createdCount++;
+
+    if (updateMode) {
+      dirty = true;
+    } else {
+      writeSnapshotFile();
+    }
+  }
+
+  /**
+   * Adds a new snapshot that is written by the next {@link #flush()}, so that tests with thousands
+   * of keyed snapshots per method do not rewrite the file once per snapshot.
+   */
+  void pushDeferred(@NonNull final SnapshotDataItem snapshot) {
+    checkWritable(Collections.singleton(snapshot));
+    getStoredSnapshots().add(snapshot);
+    createdCount++;
+    dirty = true;
+  }
+
+  /** Adds several new snapshots with a single file write. */
+  void pushAll(@NonNull final Collection<SnapshotDataItem> snapshots) {
+    if (snapshots.isEmpty()) {
+      return;
+    }
+    checkWritable(snapshots);
+    snapshots.forEach(getStoredSnapshots()::add);
+    createdCount += snapshots.size();
+
+    if (updateMode) {
+      dirty = true;
+    } else {
+      writeSnapshotFile();
+    }
+  }
+
+  /** Removes the named snapshots from the file, including ones added by other JVMs meanwhile. */
+  void remove(@NonNull final Collection<String> snapshotNames) {
+    if (readOnly) {
+      throw new IllegalStateException("Snapshot file " + pathAndfileName + " is read-only");
+    }
+    removedNames.addAll(snapshotNames);
+    snapshotNames.forEach(storedSnapshots::remove);
+    writeSnapshotFile();
+  }
+
+  /** Replaces a mismatching stored snapshot, only allowed in update mode. */
+  void update(@NonNull final SnapshotDataItem snapshot) {
+    if (!updateMode) {
+      throw new IllegalStateException("Snapshots can only be updated in update mode");
+    }
+    storedSnapshots.add(snapshot);
+    updatedCount++;
+    dirty = true;
+  }
+
+  /** New snapshots fail in read-only mode, instead of being created. */
+  private void checkWritable(final Collection<SnapshotDataItem> snapshots) {
+    if (!readOnly) {
+      return;
+    }
+    getStoredSnapshots();
+    final String names =
+        snapshots.stream().map(SnapshotDataItem::getName).collect(Collectors.joining(", "));
+    throw new SnapshotMatchException(
+        (missing
+                ? "Snapshot file " + pathAndfileName + " does not exist"
+                : "Snapshot file " + pathAndfileName + " has no snapshot " + names)
+            + ". Snapshots are not created in read-only mode, run the tests without -D"
+            + SnapshotConfig.READ_ONLY_SNAPSHOTS_PROPERTY
+            + " to create them");
+  }
+
+  /** Whether deferred, batched or updated snapshots are waiting for {@link #flush()}. */
+  boolean hasUnwrittenSnapshots() {
+    return dirty;
+  }
+
+  /** Counts a matched snapshot and drops its actual output of an earlier mismatch. */
+  void recordUnchanged(@NonNull final String snapshotName) {
+    unchangedCount++;
+    synchronized (pendingActual) {
+      if (keepsActual) {
+        pendingActual.remove(snapshotName);
+        matchedNames.add(snapshotName);
+      }
+    }
+  }
+
+  /**
+   * Writes the deferred and updated snapshots and the actual output of mismatches, and logs a
+   * summary of the changes.
+   */
+  void flush() {
+    if (!readOnly && dirty) {
+      writeSnapshotFile();
+      dirty = false;
+    }
+    if (keepsActual) {
+      writeActualFile();
+    }
+    try {
+      store.flush();
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write snapshot store of " + pathAndfileName, e);
+    }
+    if (updateMode) {
+      log.info(
+          "Snapshot file {} updated: {} updated, {} created, {} unchanged",
+          pathAndfileName,
+          updatedCount,
+          createdCount,
+          unchangedCount);
+    }
+  }
 
-    File file = new File(fileName);
+  /**
+   * Keeps the actual output of a mismatching snapshot for {@code <snapshot file>.actual}, replacing
+   * earlier output of the same snapshot, and returns the location of that file. The file is written
+   * once by {@link #flush()}, rather than once per mismatch.
+   */
+  String writeActual(@NonNull final SnapshotDataItem actual) {
+    // entries of a batch mismatch in parallel
+    synchronized (pendingActual) {
+      keepsActual = true;
+      pendingActual.put(actual.getName(), actual);
+      matchedNames.remove(actual.getName());
+    }
+    return pathAndfileName + ACTUAL_EXTENSION;
+  }
+
+  /**
+   * Merges the pending actual output into the side file and removes the output of snapshots that
+   * matched again; the side file is left alone if neither changes it.
+   */
+  private void writeActualFile() {
+    final String actualFileName = fileName + ACTUAL_EXTENSION;
+    final Map<String, SnapshotDataItem> pending;
+    final Set<String> matched;
+    synchronized (pendingActual) {
+      pending = new HashMap<>(pendingActual);
+      matched = new HashSet<>(matchedNames);
+      pendingActual.clear();
+      matchedNames.clear();
+    }
     try {
-      file.getParentFile().mkdirs();
-      file.createNewFile();
-      return file;
+      if (pending.isEmpty()
+          && (matched.isEmpty()
+              || !actualFileExists(actualFileName)
+              || !containsAny(store.load(actualFileName), matched))) {
+        return;
+      }
+      store.put(
+          actualFileName,
+          current -> {
+            final SnapshotData merged = new SnapshotData();
+            parseSnapshotItems(current)
+                .filter(item -> !matched.contains(item.getName()))
+                .forEach(merged::add);
+            pending.values().forEach(merged::add);
+            return toRawData(merged, false);
+          });
+      actualFileExists = true;
     } catch (IOException e) {
-      throw new RuntimeException("Unable to create new file " + file.getAbsolutePath(), e);
+      throw new RuntimeException("Unable to write actual snapshots to " + actualFileName, e);
     }
   }
 
-  public void push(@NonNull final SnapshotDataItem snapshot) {
+  private boolean actualFileExists(final String actualFileName) throws IOException {
+    if (actualFileExists == null) {
+      actualFileExists = store.contains(actualFileName);
+    }
+    return actualFileExists;
+  }
 
-    storedSnapshots.add(snapshot);
+  private boolean containsAny(final Optional<byte[]> content, final Set<String> names) {
+    return content.isPresent()
+        && parseSnapshotItems(content.get()).anyMatch(item -> names.contains(item.getName()));
+  }
+
+  private byte[] toRawData(SnapshotData snapshotData) {
+    return toRawData(snapshotData, deduplicate);
+  }
+
+  private byte[] toRawData(SnapshotData snapshotData, boolean deduplicate) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SnapshotFileFormat.writeHeader(out);
+    for (SnapshotDataItem item : snapshotData.getItems()) {
+      final byte[] value =
+          deduplicate && item.getDeltaBase() == null
+              ? (SnapshotPayloads.REFERENCE_PREFIX + item.getPayloadHash()).getBytes(UTF_8)
+              : item.getStoredValue();
+      SnapshotFileFormat.writeRecord(out, item.getName(), value);
+    }
+    return out.toByteArray();
+  }
 
-    final File file = createFile(pathAndfileName); // exception handling inside
-    try (OutputStreamWriter fileWriter =
-        new OutputStreamWriter(new FileOutputStream(file, false), UTF_8)) {
-
-      String content =
-          storedSnapshots
-              .getItems()
-              .stream()
-              .map(SnapshotDataItem::asRawData)
-              .collect(Collectors.joining(JOIN_STRING));
-      fileWriter.write(content);
+  private void writeSnapshotFile() {
+
+    if (deduplicate) {
+      // blobs first, so that no reader finds a reference to a missing blob
+      for (SnapshotDataItem item : storedSnapshots.getItems()) {
+        if (item.getDeltaBase() == null) {
+          payloads.write(item.getPayloadHash(), item.getUtf8Data());
+        }
+      }
+    }
+
+    // Other JVMs (e.g. surefire forks) may have added entries since we loaded the file. The store
+    // merges those into our data, so that no cooperating writer loses entries.
+    final long start = System.nanoTime();
+    final int[] size = new int[1];
+    try {
+      store.put(
+          fileName,
+          current -> {
+            parseSnapshotItems(current)
+                .filter(item -> !removedNames.contains(item.getName()))
+                .forEach(storedSnapshots::addIfAbsent);
+            final byte[] rawData = toRawData(storedSnapshots);
+            size[0] = rawData.length;
+            return rawData;
+          });
     } catch (IOException e) {
-      throw new RuntimeException(
-          "Unable to write snapshot items to file " + file.getAbsolutePath(), e);
+      throw new RuntimeException("Unable to write snapshot items to file " + pathAndfileName, e);
+    }
+    if (files != null) {
+      files.cache(fileName, storedSnapshots);
+    }
+
+    final SnapshotReport report = SnapshotReport.active();
+    if (report != null) {
+      report.recordFileWrite(pathAndfileName, size[0], System.nanoTime() - start);
     }
   }
 }
@@ -0,0 +1,162 @@
+package io.github.jsonSnapshot;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Value;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the parsed {@link SnapshotData} of every loaded snapshot file for the lifetime of the JVM,
+ * so that reruns in a long-lived test JVM (IDE continuous testing) skip reading and parsing. Every
+ * lookup compares the modification time and size of the file with the cached ones, as watch events
+ * may be late, coalesced or missing altogether on some file systems. The directories of the cached
+ * files are watched only to drop changed files early. Enabled by {@link
+ * SnapshotConfig#isWatchSnapshots()}.
+ */
+class SnapshotFileCache implements Closeable {
+
+  private static Logger log = LoggerFactory.getLogger(SnapshotFileCache.class);
+
+  private static SnapshotFileCache active;
+
+  @Value
+  private static class Entry {
+    private final SnapshotData data;
+    private final FileTime lastModified;
+    private final long size;
+  }
+
+  private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+  private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+
+  private final WatchService watchService;
+
+  SnapshotFileCache(WatchService watchService) {
+    this.watchService = watchService;
+    Thread watcher = new Thread(this::watch, "snapshot-file-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  /** The cache of this JVM, or {@code null} if caching is disabled. */
+  static synchronized SnapshotFileCache active() {
+    return active;
+  }
+
+  static synchronized void enable() {
+    if (active != null) {
+      return;
+    }
+    try {
+      active = new SnapshotFileCache(FileSystems.getDefault().newWatchService());
+    } catch (IOException e) {
+      log.warn("Unable to watch snapshot files, they are not cached", e);
+    }
+  }
+
+  /** A copy of the cached data of the file, if it is cached and unchanged. */
+  Optional<SnapshotData> get(Path file) {
+    Path key = key(file);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    if (!isUnchanged(key, entry)) {
+      entries.remove(key, entry);
+      return Optional.empty();
+    }
+    return Optional.of(entry.getData().copy());
+  }
+
+  /**
+   * Caches a copy of the data of the file.
+   *
+   * @param attributes of the file as of {@code data}: read before reading the file, or after
+   *     writing it under the exclusive lock, so that other changes are never mistaken for it
+   */
+  void put(Path file, SnapshotData data, BasicFileAttributes attributes) {
+    Path key = key(file);
+    try {
+      Path directory = key.getParent();
+      if (watchedDirectories.add(directory)) {
+        directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+      }
+    } catch (IOException | ClosedWatchServiceException e) {
+      log.warn("Unable to watch " + key + ", it is not cached", e);
+      return;
+    }
+    Entry entry = new Entry(data.copy(), attributes.lastModifiedTime(), attributes.size());
+    // changes before the directory was watched raised no event
+    if (isUnchanged(key, entry)) {
+      entries.put(key, entry);
+    }
+  }
+
+  private static Path key(Path file) {
+    return file.toAbsolutePath().normalize();
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey watchKey = watchService.take();
+        Path directory = (Path) watchKey.watchable();
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+          if (event.kind() == OVERFLOW) {
+            entries.keySet().removeIf(file -> file.getParent().equals(directory));
+          } else {
+            invalidate(directory.resolve((Path) event.context()));
+          }
+        }
+        if (!watchKey.reset()) {
+          watchedDirectories.remove(directory);
+          entries.keySet().removeIf(file -> file.getParent().equals(directory));
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      entries.clear();
+    }
+  }
+
+  /** Drops the file unless the event was caused by a write of this JVM, which updated the cache. */
+  private void invalidate(Path file) {
+    entries.computeIfPresent(file, (key, entry) -> isUnchanged(key, entry) ? entry : null);
+  }
+
+  private static boolean isUnchanged(Path file, Entry entry) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return attributes.lastModifiedTime().equals(entry.getLastModified())
+          && attributes.size() == entry.getSize();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+}
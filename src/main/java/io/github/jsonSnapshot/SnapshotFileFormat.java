@@ -0,0 +1,174 @@
+package io.github.jsonSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Version 2 of the snapshot file format: the header line {@code #snap v2}, then per snapshot a
+ * record header line {@code @record <name> <length>} followed by the {@code length} UTF-8 bytes of
+ * the stored value and a line break. Record boundaries follow from the headers alone, so readers
+ * skip payloads instead of scanning them for blank lines, and payloads may contain any text. A
+ * record edited by hand, or whose line breaks were converted by git, does not match its length
+ * anymore; it then ends before the next record header, and is re-framed when the file is written
+ * again. Headers of files written with a trailing SHA-256 field are read, the field is ignored.
+ *
+ * <p>Files without the header are in the original format, entries {@code <name>=<value>} separated
+ * by three line breaks, and are upgraded when written.
+ */
+final class SnapshotFileFormat {
+
+  private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+  static final String HEADER = "#snap v2";
+
+  private static final byte[] HEADER_BYTES = HEADER.getBytes(UTF_8);
+
+  private static final String RECORD_PREFIX = "@record ";
+
+  private static final byte[] RECORD_PREFIX_BYTES = RECORD_PREFIX.getBytes(UTF_8);
+
+  private SnapshotFileFormat() {}
+
+  /** A record of a version 2 file, located without reading its payload. */
+  @Getter(AccessLevel.PACKAGE)
+  static class Record {
+
+    private final String name;
+
+    private final int offset;
+
+    private final int length;
+
+    /** Whether the payload ended where its header said it would. */
+    private final boolean framed;
+
+    Record(String name, int offset, int length, boolean framed) {
+      this.name = name;
+      this.offset = offset;
+      this.length = length;
+      this.framed = framed;
+    }
+
+    /** A copy of the stored value of the record. */
+    byte[] value(byte[] content) {
+      return Arrays.copyOfRange(content, offset, offset + length);
+    }
+  }
+
+  static boolean isVersion2(byte[] content) {
+    if (content.length < HEADER_BYTES.length || !startsWith(content, 0, HEADER_BYTES)) {
+      return false;
+    }
+    return content.length == HEADER_BYTES.length
+        || content[HEADER_BYTES.length] == '\n'
+        || content[HEADER_BYTES.length] == '\r';
+  }
+
+  static void writeHeader(ByteArrayOutputStream out) {
+    out.write(HEADER_BYTES, 0, HEADER_BYTES.length);
+    out.write('\n');
+  }
+
+  static void writeRecord(ByteArrayOutputStream out, String name, byte[] value) {
+    final byte[] header =
+        (RECORD_PREFIX + name + " " + value.length + "\n").getBytes(UTF_8);
+    out.write(header, 0, header.length);
+    out.write(value, 0, value.length);
+    out.write('\n');
+  }
+
+  /** The records of a version 2 file, found by their headers. */
+  static List<Record> records(byte[] content) {
+    final List<Record> records = new ArrayList<>();
+    int position = skipLine(content, 0);
+    while (position < content.length) {
+      final int headerEnd = lineEnd(content, position);
+      final String header = new String(content, position, headerEnd - position, UTF_8).trim();
+      final int start = skipLine(content, position);
+      if (header.isEmpty()) {
+        position = start;
+        continue;
+      }
+      final String[] fields =
+          header.startsWith(RECORD_PREFIX)
+              ? header.substring(RECORD_PREFIX.length()).split(" ")
+              : new String[0];
+      if (fields.length < 2 || fields.length > 3 || !fields[1].matches("\\d{1,9}")) {
+        throw new SnapshotMatchException("Malformed snapshot record header '" + header + "'");
+      }
+
+      int end = start + Integer.parseInt(fields[1]);
+      final boolean framed = end <= content.length && isRecordEnd(content, end);
+      if (!framed) {
+        end = nextRecord(content, start);
+        while (end > start && (content[end - 1] == '\n' || content[end - 1] == '\r')) {
+          end--;
+        }
+      }
+      records.add(new Record(fields[0], start, end - start, framed));
+      position = skipLineBreak(content, end);
+    }
+    return records;
+  }
+
+  /** Whether a payload ending at {@code end} is followed by the end of the file or a record. */
+  private static boolean isRecordEnd(byte[] content, int end) {
+    if (end == content.length) {
+      return true;
+    }
+    return content[end] == '\n'
+        && (end + 1 == content.length || startsWith(content, end + 1, RECORD_PREFIX_BYTES));
+  }
+
+  /** The line break before the next record header after {@code from}, or the end of the file. */
+  private static int nextRecord(byte[] content, int from) {
+    for (int i = from; i < content.length; i++) {
+      if (content[i] == '\n' && startsWith(content, i + 1, RECORD_PREFIX_BYTES)) {
+        return i;
+      }
+    }
+    return content.length;
+  }
+
+  private static int lineEnd(byte[] content, int from) {
+    int i = from;
+    while (i < content.length && content[i] != '\n') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipLine(byte[] content, int from) {
+    return Math.min(lineEnd(content, from) + 1, content.length);
+  }
+
+  private static int skipLineBreak(byte[] content, int from) {
+    int i = from;
+    if (i < content.length && content[i] == '\r') {
+      i++;
+    }
+    if (i < content.length && content[i] == '\n') {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean startsWith(byte[] content, int offset, byte[] prefix) {
+    if (offset + prefix.length > content.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (content[offset + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
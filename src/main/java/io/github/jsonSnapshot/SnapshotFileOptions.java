@@ -0,0 +1,35 @@
+package io.github.jsonSnapshot;
+
+import lombok.Value;
+import lombok.experimental.Wither;
+
+/**
+ * How a {@link SnapshotFile} is read and written, see the matching {@link SnapshotConfig} modes.
+ */
+@Value
+@Wither
+class SnapshotFileOptions {
+
+  /** All modes off: snapshots are matched, and new ones written at once. */
+  static final SnapshotFileOptions DEFAULT = new SnapshotFileOptions(false, false, false, false);
+
+  /** {@link SnapshotConfig#isUpdateSnapshots()} */
+  private final boolean updateMode;
+
+  /** {@link SnapshotConfig#isDeduplicateSnapshots()} */
+  private final boolean deduplicate;
+
+  /** {@link SnapshotConfig#isWriteActualSnapshots()} */
+  private final boolean writeActual;
+
+  /** {@link SnapshotConfig#isReadOnlySnapshots()} */
+  private final boolean readOnly;
+
+  static SnapshotFileOptions of(SnapshotConfig config) {
+    return new SnapshotFileOptions(
+        config.isUpdateSnapshots(),
+        config.isDeduplicateSnapshots(),
+        config.isWriteActualSnapshots(),
+        config.isReadOnlySnapshots());
+  }
+}
@@ -0,0 +1,50 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Lists the snapshot files of a directory tree, forking a task per sub directory. */
+class SnapshotFileWalk extends RecursiveTask<List<Path>> {
+
+  static final String SNAPSHOT_EXTENSION = ".snap";
+
+  private final Path directory;
+
+  private SnapshotFileWalk(Path directory) {
+    this.directory = directory;
+  }
+
+  static List<Path> walk(Path root) {
+    return ForkJoinPool.commonPool().invoke(new SnapshotFileWalk(root));
+  }
+
+  @Override
+  protected List<Path> compute() {
+    List<Path> files = new ArrayList<>();
+    List<SnapshotFileWalk> subDirectories = new ArrayList<>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        if (Files.isDirectory(entry)) {
+          SnapshotFileWalk walk = new SnapshotFileWalk(entry);
+          walk.fork();
+          subDirectories.add(walk);
+        } else if (entry.getFileName().toString().endsWith(SNAPSHOT_EXTENSION)) {
+          files.add(entry);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    for (SnapshotFileWalk walk : subDirectories) {
+      files.addAll(walk.join());
+    }
+    return files;
+  }
+}
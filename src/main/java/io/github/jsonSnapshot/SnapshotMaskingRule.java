@@ -0,0 +1,79 @@
+package io.github.jsonSnapshot;
+
+import lombok.NonNull;
+
+import com.fasterxml.jackson.core.JsonStreamContext;
+
+/**
+ * Replaces the value of a volatile field (timestamps, generated ids, ...) while the snapshot is
+ * serialized, see {@link SnapshotConfig#getSnapshotMaskingRules()}.
+ *
+ * <p>A rule either matches a property name at any depth, or a JSON pointer relative to the
+ * serialized {@code expect} arguments, e.g. {@code /0/createdAt}. A pointer segment of {@code *}
+ * matches any property name or array index.
+ */
+public class SnapshotMaskingRule {
+
+  private static final String WILDCARD = "*";
+
+  private final String propertyName;
+
+  private final String[] pointerSegments;
+
+  private final Object replacement;
+
+  private SnapshotMaskingRule(String propertyName, String[] pointerSegments, Object replacement) {
+    this.propertyName = propertyName;
+    this.pointerSegments = pointerSegments;
+    this.replacement = replacement;
+  }
+
+  public static SnapshotMaskingRule property(@NonNull String propertyName, Object replacement) {
+    return new SnapshotMaskingRule(propertyName, null, replacement);
+  }
+
+  public static SnapshotMaskingRule pointer(@NonNull String pointer, Object replacement) {
+    if (!pointer.startsWith("/") || pointer.length() == 1) {
+      throw new IllegalArgumentException("Invalid JSON pointer for masking rule: " + pointer);
+    }
+    String[] segments = pointer.substring(1).split("/", -1);
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = segments[i].replace("~1", "/").replace("~0", "~");
+    }
+    return new SnapshotMaskingRule(segments[segments.length - 1], segments, replacement);
+  }
+
+  public Object getReplacement() {
+    return replacement;
+  }
+
+  /** @param context the generator's output context right after the field name has been written */
+  boolean matches(String fieldName, JsonStreamContext context) {
+    if (!WILDCARD.equals(propertyName) && !propertyName.equals(fieldName)) {
+      return false;
+    }
+    if (pointerSegments == null) {
+      return true;
+    }
+
+    // walk the pointer backwards against the enclosing contexts, without building the path
+    JsonStreamContext current = context.getParent();
+    for (int i = pointerSegments.length - 2; i >= 0; i--) {
+      if (current == null || current.inRoot()) {
+        return false;
+      }
+      String segment = pointerSegments[i];
+      if (!WILDCARD.equals(segment)) {
+        if (current.inArray()) {
+          if (!segment.equals(Integer.toString(current.getCurrentIndex()))) {
+            return false;
+          }
+        } else if (!segment.equals(current.getCurrentName())) {
+          return false;
+        }
+      }
+      current = current.getParent();
+    }
+    return current != null && current.inRoot();
+  }
+}
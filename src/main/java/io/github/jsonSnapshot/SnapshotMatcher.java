@@ -4,19 +4,21 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.assertj.core.util.Arrays;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.jupiter.api.BeforeAll;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestTemplate;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -25,29 +27,31 @@ import com.fasterxml.jackson.core.util.DefaultIndenter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter.Indenter;
 import com.fasterxml.jackson.core.util.Separators;
+import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 
 public class SnapshotMatcher {
 
-  private static Logger log = LoggerFactory.getLogger(SnapshotMatcher.class);
+  private static final Pattern VALID_KEY = Pattern.compile("[^\\s=\\[\\]]+");
 
-  private static Class clazz = null;
-  private static SnapshotFile snapshotFile = null;
-  private static List<Snapshot> calledSnapshots = new ArrayList<>();
-  private static Function<Object, String> serializeFunction;
-  private static SnapshotMatchingStrategy snapshotMatchingStrategy;
+  /** The open session, taken by whoever closes it so that it is closed once. */
+  private static final AtomicReference<SnapshotSession> SESSION = new AtomicReference<>();
+
+  private static boolean shutdownHookAdded;
+  private static SimpleModule generatedSerializers;
 
   public static void start() {
-    start(new DefaultConfig(), defaultJsonFunction());
+    startSession(new DefaultConfig(), defaultJsonFunction());
   }
 
   public static void start(SnapshotConfig config) {
-    start(config, defaultJsonFunction());
+    startSession(config, defaultJsonFunction(config));
   }
 
   public static void start(Function<Object, String> serializeFunction) {
-    start(new DefaultConfig(), serializeFunction);
+    startSession(new DefaultConfig(), serializeFunction);
   }
 
   /**
@@ -56,78 +60,191 @@ public class SnapshotMatcher {
    *     {@code config}'s {@link SnapshotMatchingStrategy}.
    */
   public static void start(SnapshotConfig config, Function<Object, String> serializeFunction) {
-    SnapshotMatcher.serializeFunction = serializeFunction;
+    startSession(config, serializeFunction);
+  }
+
+  /** Like {@link #start()}, returning the new session of the calling test class. */
+  public static SnapshotSession startSession() {
+    return startSession(new DefaultConfig(), defaultJsonFunction());
+  }
+
+  /** Like {@link #start(SnapshotConfig)}, returning the new session of the calling test class. */
+  public static SnapshotSession startSession(SnapshotConfig config) {
+    return startSession(config, defaultJsonFunction(config));
+  }
+
+  /**
+   * Like {@link #start(SnapshotConfig, Function)}.
+   *
+   * @return the new session of the calling test class, closed by {@link #validateSnapshots()}
+   */
+  public static SnapshotSession startSession(
+      SnapshotConfig config, Function<Object, String> serializeFunction) {
+    if (config.getReportDirectory() != null) {
+      SnapshotReport.enable(config.getReportDirectory());
+    }
+    if (config.isWatchSnapshots()) {
+      SnapshotFileCache.enable();
+    }
+    SnapshotSession abandoned = SESSION.getAndSet(null);
+    if (abandoned != null) {
+      abandoned.closeAbandoned("the session of another test class was started");
+    }
+    addShutdownHook();
     try {
       StackTraceElement stackElement = findStackElement();
-      clazz = Class.forName(stackElement.getClassName());
-      snapshotFile =
+      Class<?> clazz = Class.forName(stackElement.getClassName());
+      SnapshotFile snapshotFile =
           new SnapshotFile(
-              config.getFilePath(), stackElement.getClassName().replaceAll("\\.", "/") + ".snap");
-      snapshotMatchingStrategy = config.getSnapshotMatchingStrategy();
+              config.getSnapshotStore(),
+              stackElement.getClassName().replaceAll("\\.", "/") + ".snap",
+              SnapshotFileOptions.of(config));
+      SnapshotSession started =
+          new SnapshotSession(
+              clazz, snapshotFile, serializeFunction, config.getSnapshotMatchingStrategy());
+      SESSION.set(started);
+      return started;
     } catch (ClassNotFoundException | IOException e) {
       throw new SnapshotMatchException(e.getMessage());
     }
   }
 
-  public static void validateSnapshots() {
-    SnapshotData storedSnapshots = snapshotFile.getStoredSnapshots();
-    List<String> snapshotNames =
-        calledSnapshots.stream().map(Snapshot::getSnapshotName).collect(Collectors.toList());
-    List<SnapshotDataItem> unusedRawSnapshots = new ArrayList<>();
-
-    for (SnapshotDataItem storedSnapshot : storedSnapshots.getItems()) {
-      boolean foundSnapshot = false;
-      for (String snapshotName : snapshotNames) {
-
-        if (storedSnapshot.getName().equals(snapshotName)) {
-          foundSnapshot = true;
-        }
-      }
-      if (!foundSnapshot) {
-        unusedRawSnapshots.add(storedSnapshot);
-      }
+  /** Writes the snapshots of a session still open when the JVM exits, then the report. */
+  private static synchronized void addShutdownHook() {
+    if (shutdownHookAdded) {
+      return;
     }
-    if (unusedRawSnapshots.size() > 0) {
-      log.warn(
-          "All unused Snapshots: "
-              + StringUtils.join(unusedRawSnapshots, "\n")
-              + ". Consider deleting the snapshot file to recreate it!");
+    shutdownHookAdded = true;
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  SnapshotSession current = SESSION.getAndSet(null);
+                  try {
+                    if (current != null) {
+                      current.closeAbandoned("the JVM is shutting down");
+                    }
+                  } finally {
+                    SnapshotReport.writeActive();
+                  }
+                }));
+  }
+
+  /**
+   * Closes the session of {@code testClass} if its test class did not, see {@link
+   * SnapshotExtension}.
+   */
+  static void closeAbandonedSession(Class<?> testClass) {
+    SnapshotSession current = SESSION.get();
+    if (current != null
+        && current.getTestClass() == testClass
+        && SESSION.compareAndSet(current, null)) {
+      current.closeAbandoned("its test class has finished");
+    }
+  }
+
+  /** Closes the session of the current test class, see {@link SnapshotSession#close()}. */
+  public static void validateSnapshots() {
+    SnapshotSession current = SESSION.getAndSet(null);
+    if (current == null) {
+      throw notStarted();
     }
+    current.close();
   }
 
+  /**
+   * Records a snapshot for the calling test method. Within an invocation of a test template, e.g. a
+   * {@code @ParameterizedTest}, and with the {@link SnapshotExtension} registered, the snapshot is
+   * keyed by the invocation index.
+   *
+   * @throws SnapshotMatchException within a test template if the extension is not registered
+   */
   public static Snapshot expect(Object firstObject, Object... others) {
+    return expect(SnapshotExtension.currentInvocationKey(), firstObject, others);
+  }
+
+  /**
+   * Records a snapshot for the calling test method, stored as {@code <class>.<method>[<key>]}.
+   * Meant for tests with many cases per method, like dynamic tests or parameterized tests keyed by
+   * one of their arguments. Keyed snapshots are written once when the session is closed instead of
+   * once per snapshot.
+   *
+   * @param key must not contain whitespace, {@code '='} or brackets
+   */
+  public static Snapshot expectWithKey(String key, Object firstObject, Object... others) {
+    validateKey(key);
+    return expect(key, firstObject, others);
+  }
+
+  private static Snapshot expect(String key, Object firstObject, Object[] others) {
 
-    if (clazz == null) {
+    SnapshotSession current = validateStarted();
+    Object[] objects = mergeObjects(firstObject, others);
+    Method method = findTestMethod(current);
+    if (key == null && method != SnapshotExtension.currentTestMethod() && isTestTemplate(method)) {
       throw new SnapshotMatchException(
-          "SnapshotTester not yet started! Start it on @BeforeClass/@BeforeAll with SnapshotMatcher.start()");
+          "Test template method "
+              + method.getName()
+              + " of "
+              + current.getTestClass()
+              + " would store the snapshots of all its invocations under one name\nPlease register"
+              + " the SnapshotExtension, or use expectWithKey");
     }
-    Object[] objects = mergeObjects(firstObject, others);
-    StackTraceElement stackElement = findStackElement();
-    Method method = getMethod(clazz, stackElement.getMethodName());
-    Snapshot snapshot =
-        new Snapshot(
-            snapshotFile, clazz, method, serializeFunction, snapshotMatchingStrategy, objects);
-    validateExpectCall(snapshot);
-    calledSnapshots.add(snapshot);
-    return snapshot;
+    return current.newSnapshot(method, key, objects);
   }
 
-  static Function<Object, String> defaultJsonFunction() {
+  /**
+   * Records one named sub-snapshot per entry for the calling test method, stored as {@code
+   * <class>.<method>[<key>]}. The entries are serialized and matched in parallel, so the serialize
+   * function given to {@link #start(SnapshotConfig, Function)} must be thread safe.
+   *
+   * @param namedObjects keys must not contain whitespace, {@code '='} or brackets
+   */
+  public static SnapshotBatch expectAll(Map<String, ?> namedObjects) {
 
-    ObjectMapper objectMapper = buildObjectMapper();
+    SnapshotSession current = validateStarted();
+    if (namedObjects.isEmpty()) {
+      throw new SnapshotMatchException("expectAll needs at least one named object");
+    }
+    Method method = findTestMethod(current);
+    namedObjects.keySet().forEach(SnapshotMatcher::validateKey);
+    List<Snapshot> snapshots = new ArrayList<>(namedObjects.size());
+    for (Map.Entry<String, ?> entry : namedObjects.entrySet()) {
+      snapshots.add(current.newSnapshot(method, entry.getKey(), new Object[] {entry.getValue()}));
+    }
+    return new SnapshotBatch(snapshots);
+  }
 
-    PrettyPrinter pp = buildDefaultPrettyPrinter();
+  private static void validateKey(String key) {
+    if (key == null || !VALID_KEY.matcher(key).matches()) {
+      throw new SnapshotMatchException(
+          "Invalid snapshot key '" + key + "': keys must not contain whitespace, '=' or brackets");
+    }
+  }
 
-    return (object) -> {
-      try {
-        return objectMapper.writer(pp).writeValueAsString(object);
-      } catch (Exception e) {
-        throw new SnapshotMatchException(e.getMessage());
-      }
-    };
+  private static SnapshotSession validateStarted() {
+    SnapshotSession current = SESSION.get();
+    if (current == null) {
+      throw notStarted();
+    }
+    return current;
+  }
+
+  private static SnapshotMatchException notStarted() {
+    return new SnapshotMatchException(
+        "SnapshotTester not yet started! Start it on @BeforeClass/@BeforeAll with SnapshotMatcher.start()");
   }
 
-  private static PrettyPrinter buildDefaultPrettyPrinter() {
+  static Function<Object, String> defaultJsonFunction() {
+    return defaultJsonFunction(new DefaultConfig());
+  }
+
+  static Function<Object, String> defaultJsonFunction(SnapshotConfig config) {
+    return new DefaultJsonFunction(
+        buildObjectMapper(config.isCanonicalSnapshots()), buildDefaultPrettyPrinter(), config);
+  }
+
+  static PrettyPrinter buildDefaultPrettyPrinter() {
     DefaultPrettyPrinter pp =
         new DefaultPrettyPrinter("") {
           @Override
@@ -144,9 +261,13 @@ public class SnapshotMatcher {
     return pp;
   }
 
-  private static ObjectMapper buildObjectMapper() {
+  private static ObjectMapper buildObjectMapper(boolean canonical) {
     ObjectMapper objectMapper = new ObjectMapper();
     objectMapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    if (canonical) {
+      objectMapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+      objectMapper.registerModule(new CanonicalJsonModule());
+    }
     objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
 
     objectMapper.setVisibility(
@@ -157,36 +278,59 @@ public class SnapshotMatcher {
             .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
             .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
             .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
+    if (!canonical) {
+      objectMapper.registerModule(generatedSerializersModule());
+    }
     return objectMapper;
   }
 
-  private static void validateExpectCall(Snapshot snapshot) {
-    for (Snapshot eachSnapshot : calledSnapshots) {
-      if (eachSnapshot.getSnapshotName().equals(snapshot.getSnapshotName())) {
-        throw new SnapshotMatchException(
-            "You can only call 'expect' once per test method. Try using array of arguments on a single 'expect' call");
+  /** Serializers generated for {@link SnapshotSerializable} classes, found on the class path. */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static synchronized SimpleModule generatedSerializersModule() {
+    if (generatedSerializers == null) {
+      generatedSerializers = new SimpleModule("SnapshotSerializers");
+      for (SnapshotSerializer serializer : ServiceLoader.load(SnapshotSerializer.class)) {
+        generatedSerializers.addSerializer(serializer.handledType(), serializer);
       }
     }
+    return generatedSerializers;
+  }
+
+  /**
+   * The test method snapshots are taken for: the one JUnit runs, as told by the {@link
+   * SnapshotExtension}, otherwise the first method on the stack with a test annotation.
+   */
+  private static Method findTestMethod(SnapshotSession current) {
+    Method method = SnapshotExtension.currentTestMethod();
+    if (method != null && method.getDeclaringClass().isAssignableFrom(current.getTestClass())) {
+      return method;
+    }
+    return getMethod(current.getTestClass(), findStackElement().getMethodName());
   }
 
   private static Method getMethod(Class<?> clazz, String methodName) {
-    try {
-      return Stream.of(clazz.getDeclaredMethods())
-          .filter(method -> method.getName().equals(methodName))
-          .findFirst()
-          .orElseThrow(() -> new NoSuchMethodException("Not Found"));
-    } catch (NoSuchMethodException e) {
-      return Optional.ofNullable(clazz.getSuperclass())
-          .map(superclass -> getMethod(superclass, methodName))
-          .orElseThrow(
-              () ->
-                  new SnapshotMatchException(
-                      "Could not find method "
-                          + methodName
-                          + " on class "
-                          + clazz
-                          + "\nPlease annotate your test method with @Test and make it without any parameters!"));
+    return findMethod(clazz, methodName)
+        .orElseThrow(
+            () ->
+                new SnapshotMatchException(
+                    "Could not find method "
+                        + methodName
+                        + " on class "
+                        + clazz
+                        + "\nPlease register the SnapshotExtension, or call expect from a test"
+                        + " method of the test class, e.g. a @Test, @ParameterizedTest or"
+                        + " @TestFactory method, on the stack"));
+  }
+
+  private static Optional<Method> findMethod(Class<?> clazz, String methodName) {
+    Optional<Method> declared =
+        Stream.of(clazz.getDeclaredMethods())
+            .filter(method -> method.getName().equals(methodName))
+            .findFirst();
+    if (declared.isPresent() || clazz.getSuperclass() == null) {
+      return declared;
     }
+    return findMethod(clazz.getSuperclass(), methodName);
   }
 
   private static StackTraceElement findStackElement() {
@@ -202,10 +346,11 @@ public class SnapshotMatcher {
         .skip(elementsToSkip)
         .filter(
             stackTraceElement ->
-                hasTestAnnotation(
-                    getMethod(
+                findMethod(
                         getClass(stackTraceElement.getClassName()),
-                        stackTraceElement.getMethodName())))
+                        stackTraceElement.getMethodName())
+                    .map(SnapshotMatcher::hasTestAnnotation)
+                    .orElse(false))
         .findFirst()
         .orElseThrow(
             () ->
@@ -217,7 +362,17 @@ public class SnapshotMatcher {
     return method.isAnnotationPresent(Test.class)
         || method.isAnnotationPresent(BeforeClass.class)
         || method.isAnnotationPresent(org.junit.jupiter.api.Test.class)
-        || method.isAnnotationPresent(BeforeAll.class);
+        || method.isAnnotationPresent(TestFactory.class)
+        || method.isAnnotationPresent(BeforeAll.class)
+        || isTestTemplate(method);
+  }
+
+  /** Whether the method is invoked once per case, e.g. a {@code @ParameterizedTest}. */
+  private static boolean isTestTemplate(Method method) {
+    return method.isAnnotationPresent(TestTemplate.class)
+        || Stream.of(method.getAnnotations())
+            .anyMatch(
+                annotation -> annotation.annotationType().isAnnotationPresent(TestTemplate.class));
   }
 
   private static Object[] mergeObjects(Object firstObject, Object[] others) {
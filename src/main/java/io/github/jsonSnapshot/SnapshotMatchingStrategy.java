@@ -4,4 +4,25 @@ public interface SnapshotMatchingStrategy {
 
   void match(SnapshotDataItem expectedSnapshotItem, String currentObject)
       throws SnapshotMatchException;
+
+  /**
+   * Like {@link #match(SnapshotDataItem, String)}, but the exception shows at most {@code
+   * previewLength} characters of the current object and of the difference, for snapshots whose
+   * actual output is written to a side file instead.
+   */
+  default void match(SnapshotDataItem expectedSnapshotItem, String currentObject, int previewLength)
+      throws SnapshotMatchException {
+    match(expectedSnapshotItem, currentObject);
+  }
+
+  /** The first {@code maxLength} characters of {@code text}, with a note on what was left out. */
+  static String preview(String text, int maxLength) {
+    if (text.length() <= maxLength) {
+      return text;
+    }
+    return text.substring(0, maxLength)
+        + "\n... ("
+        + (text.length() - maxLength)
+        + " more characters)";
+  }
 }
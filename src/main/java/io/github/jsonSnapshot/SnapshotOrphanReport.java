@@ -0,0 +1,30 @@
+package io.github.jsonSnapshot;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Value;
+
+/** The result of a {@link SnapshotOrphanScanner} run. */
+@Value
+public class SnapshotOrphanReport {
+
+  /** Scanned snapshot files. */
+  private final int scannedFiles;
+
+  /** Snapshot files whose test class does not exist anymore, relative to the snapshot path. */
+  private final List<String> orphanFiles;
+
+  /** Per remaining snapshot file, the entries whose test method does not exist anymore. */
+  private final Map<String, List<String>> orphanEntries;
+
+  /** Payload blobs no remaining snapshot entry refers to, relative to the snapshot path. */
+  private final List<String> orphanBlobs;
+
+  /** Whether the orphans have been deleted. */
+  private final boolean deleted;
+
+  public boolean hasOrphans() {
+    return !orphanFiles.isEmpty() || !orphanEntries.isEmpty() || !orphanBlobs.isEmpty();
+  }
+}
@@ -0,0 +1,325 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds snapshot files and entries of test classes and methods that no longer exist, below {@link
+ * SnapshotConfig#getFilePath()}. Meant to run once per suite, e.g. from the last test class or a
+ * test execution listener. The tree is walked and the files are parsed in parallel; only the entry
+ * names are parsed.
+ *
+ * <p>Orphans are determined against the test classes on the class path rather than the tests
+ * executed in this JVM, so that running part of a suite never reports the skipped tests. Payload
+ * blobs of {@link SnapshotConfig#isDeduplicateSnapshots() deduplicated} files are orphans when no
+ * remaining entry refers to them. Deleting refuses to run when the class path looks wrong, see
+ * {@link SnapshotConfig#getMaxOrphanFileShare()}; nothing is deleted until the whole tree has been
+ * scanned. Only a {@link FileSystemSnapshotStore} can be scanned.
+ */
+public class SnapshotOrphanScanner {
+
+  private static Logger log = LoggerFactory.getLogger(SnapshotOrphanScanner.class);
+
+  private final SnapshotConfig config;
+
+  private final Path root;
+
+  private final ClassLoader classLoader;
+
+  /** The store orphan entries are removed through, so that files keep their configured format. */
+  private final SnapshotStore store;
+
+  /** Bytes of a reference to a payload blob, {@code @sha256:} and the hash as hex. */
+  private static final int BLOB_REFERENCE_LENGTH = SnapshotPayloads.REFERENCE_PREFIX.length() + 64;
+
+  private final Map<String, Optional<Class<?>>> classes = new ConcurrentHashMap<>();
+
+  /**
+   * @throws SnapshotMatchException if the snapshot store of the config does not keep its files
+   *     below a directory
+   */
+  public SnapshotOrphanScanner(SnapshotConfig config) {
+    this(config, Thread.currentThread().getContextClassLoader());
+  }
+
+  SnapshotOrphanScanner(SnapshotConfig config, ClassLoader classLoader) {
+    this.config = config;
+    this.classLoader = classLoader;
+    this.store = config.getSnapshotStore();
+    if (!(store instanceof FileSystemSnapshotStore)) {
+      throw new SnapshotMatchException(
+          "Orphan snapshots can only be found in a FileSystemSnapshotStore, not in a "
+              + store.getClass().getSimpleName());
+    }
+    this.root = Paths.get(((FileSystemSnapshotStore) store).getFilePath());
+  }
+
+  /** Reports orphan files and entries without changing anything. */
+  public SnapshotOrphanReport scan() {
+    return run(false);
+  }
+
+  /**
+   * Deletes orphan files and payload blobs, and removes orphan entries from the remaining files.
+   *
+   * @throws SnapshotMatchException without deleting anything, if no snapshot file belongs to a test
+   *     class, or more than {@link SnapshotConfig#getMaxOrphanFileShare()} of the files are orphans
+   */
+  public SnapshotOrphanReport deleteOrphans() {
+    return run(true);
+  }
+
+  private SnapshotOrphanReport run(boolean delete) {
+    if (!Files.isDirectory(root)) {
+      return new SnapshotOrphanReport(
+          0, Collections.emptyList(), Collections.emptyMap(), Collections.emptyList(), delete);
+    }
+    List<Path> files = SnapshotFileWalk.walk(root);
+
+    List<String> orphanFiles = Collections.synchronizedList(new ArrayList<>());
+    Map<String, List<String>> orphanEntries = new ConcurrentHashMap<>();
+    Set<String> referencedBlobs = ConcurrentHashMap.newKeySet();
+    files
+        .parallelStream()
+        .forEach(
+            file -> {
+              String fileName = root.relativize(file).toString().replace('\\', '/');
+              if (!loadClass(className(fileName)).isPresent()) {
+                orphanFiles.add(fileName);
+                return;
+              }
+              List<String> orphans = new ArrayList<>();
+              for (Entry entry : readEntries(file)) {
+                if (isOrphan(entry.name)) {
+                  orphans.add(entry.name);
+                } else if (entry.blob != null) {
+                  referencedBlobs.add(entry.blob);
+                }
+              }
+              if (!orphans.isEmpty()) {
+                orphanEntries.put(fileName, orphans);
+              }
+            });
+    List<Path> orphanBlobs = findOrphanBlobs(referencedBlobs);
+
+    Collections.sort(orphanFiles);
+    SnapshotOrphanReport report =
+        new SnapshotOrphanReport(
+            files.size(),
+            new ArrayList<>(orphanFiles),
+            new TreeMap<>(orphanEntries),
+            orphanBlobs.stream().map(this::relativeName).collect(Collectors.toList()),
+            delete);
+    if (delete && report.hasOrphans()) {
+      checkDeletable(report);
+      orphanFiles.parallelStream().forEach(fileName -> deleteFile(root.resolve(fileName)));
+      orphanEntries
+          .entrySet()
+          .parallelStream()
+          .forEach(e -> removeEntries(e.getKey(), e.getValue()));
+      flushStore();
+      orphanBlobs.forEach(SnapshotOrphanScanner::deleteFile);
+    }
+    if (report.hasOrphans()) {
+      log.warn(
+          "{} orphan snapshot files, {} files with orphan entries and {} orphan payload blobs {}:"
+              + " {} {} {}",
+          report.getOrphanFiles().size(),
+          report.getOrphanEntries().size(),
+          report.getOrphanBlobs().size(),
+          delete ? "deleted" : "found",
+          report.getOrphanFiles(),
+          report.getOrphanEntries(),
+          report.getOrphanBlobs());
+    }
+    return report;
+  }
+
+  /**
+   * Refuses to delete when the class path does not look like the one of the suite: when no snapshot
+   * file belongs to a loadable test class, or more than {@link
+   * SnapshotConfig#getMaxOrphanFileShare()} of the files would be deleted.
+   */
+  private void checkDeletable(SnapshotOrphanReport report) {
+    int files = report.getScannedFiles();
+    int orphanFiles = report.getOrphanFiles().size();
+    if (orphanFiles == files) {
+      throw new SnapshotMatchException(
+          "Refusing to delete orphan snapshots: none of the "
+              + files
+              + " snapshot files below "
+              + root
+              + " belongs to a test class on the class path");
+    }
+    if (orphanFiles > files * config.getMaxOrphanFileShare()) {
+      throw new SnapshotMatchException(
+          "Refusing to delete "
+              + orphanFiles
+              + " of "
+              + files
+              + " snapshot files below "
+              + root
+              + ", more than the configured maximum share of "
+              + config.getMaxOrphanFileShare()
+              + ": "
+              + report.getOrphanFiles());
+    }
+  }
+
+  /** The blobs of the payload directory that are not referred to by any remaining entry. */
+  private List<Path> findOrphanBlobs(Set<String> referencedBlobs) {
+    Path blobs = root.resolve(SnapshotPayloads.BLOB_DIRECTORY);
+    if (!Files.isDirectory(blobs)) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> paths = Files.list(blobs)) {
+      return paths
+          .filter(blob -> !referencedBlobs.contains(blobHash(blob)))
+          .sorted()
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String blobHash(Path blob) {
+    String name = blob.getFileName().toString();
+    int extension = name.lastIndexOf('.');
+    return extension < 0 ? name : name.substring(0, extension);
+  }
+
+  private String relativeName(Path path) {
+    return root.relativize(path).toString().replace('\\', '/');
+  }
+
+  private static String className(String fileName) {
+    return fileName
+        .substring(0, fileName.length() - SnapshotFileWalk.SNAPSHOT_EXTENSION.length())
+        .replace('/', '.');
+  }
+
+  /** An entry of a snapshot file, with the hash of its payload blob if it refers to one. */
+  private static class Entry {
+    private final String name;
+
+    private final String blob;
+
+    Entry(String name, String blob) {
+      this.name = name;
+      this.blob = blob;
+    }
+  }
+
+  private static List<Entry> readEntries(Path file) {
+    try {
+      byte[] bytes = Files.readAllBytes(file);
+      if (SnapshotFileFormat.isVersion2(bytes)) {
+        return SnapshotFileFormat.records(bytes)
+            .stream()
+            .map(record -> new Entry(record.getName(), blobOf(record, bytes)))
+            .collect(Collectors.toList());
+      }
+      String content = new String(bytes, StandardCharsets.UTF_8);
+      return Stream.of(SnapshotFile.split(content))
+          .map(String::trim)
+          .filter(item -> item.indexOf('=') > 0)
+          .map(
+              item -> {
+                Matcher reference = SnapshotPayloads.REFERENCE.matcher(item);
+                return new Entry(
+                    item.substring(0, item.indexOf('=')).trim(),
+                    reference.matches() ? reference.group("hash") : null);
+              })
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String blobOf(SnapshotFileFormat.Record record, byte[] content) {
+    if (record.getLength() != BLOB_REFERENCE_LENGTH) {
+      return null;
+    }
+    String value =
+        new String(content, record.getOffset(), record.getLength(), StandardCharsets.UTF_8);
+    return value.startsWith(SnapshotPayloads.REFERENCE_PREFIX)
+        ? value.substring(SnapshotPayloads.REFERENCE_PREFIX.length())
+        : null;
+  }
+
+  /** Whether the class or the test method of the entry does not exist anymore. */
+  private boolean isOrphan(String entryName) {
+    String className = SnapshotDataItem.namePrefix(entryName);
+    String methodName = SnapshotDataItem.nameSuffix(entryName);
+    int keyStart = methodName.indexOf('[');
+    String testMethod = keyStart < 0 ? methodName : methodName.substring(0, keyStart);
+    return className == null
+        || !loadClass(className).map(type -> hasMethod(type, testMethod)).orElse(false);
+  }
+
+  private Optional<Class<?>> loadClass(String className) {
+    return classes.computeIfAbsent(
+        className,
+        name -> {
+          try {
+            return Optional.of(Class.forName(name, false, classLoader));
+          } catch (ClassNotFoundException | LinkageError e) {
+            return Optional.empty();
+          }
+        });
+  }
+
+  private static boolean hasMethod(Class<?> type, String methodName) {
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      for (Method method : current.getDeclaredMethods()) {
+        if (method.getName().equals(methodName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static void deleteFile(Path file) {
+    try {
+      Files.delete(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void removeEntries(String fileName, List<String> entryNames) {
+    try {
+      new SnapshotFile(store, fileName, SnapshotFileOptions.of(config)).remove(entryNames);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void flushStore() {
+    try {
+      store.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
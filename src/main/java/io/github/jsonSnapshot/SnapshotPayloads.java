@@ -0,0 +1,165 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed snapshot payloads. A snapshot file written with {@link
+ * SnapshotConfig#isDeduplicateSnapshots()} stores each entry as {@code name=@sha256:<hash>}, and
+ * every distinct payload once as {@code <hash>.json} in a blob directory of the {@link
+ * SnapshotStore}. Loaded payloads are shared in memory by all entries with the same content.
+ */
+final class SnapshotPayloads {
+
+  static final String BLOB_DIRECTORY = "snapshot-blobs";
+
+  static final String REFERENCE_PREFIX = "@sha256:";
+
+  static final Pattern REFERENCE =
+      Pattern.compile("(?<name>[^ =]*) *= *" + REFERENCE_PREFIX + "(?<hash>[0-9a-f]{64})\\s*");
+
+  private static final String BLOB_EXTENSION = ".json";
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** Loaded payloads by length and {@link Arrays#hashCode(byte[])}, compared in full on a hit. */
+  private static final Map<Long, List<SharedPayload>> SHARED = new ConcurrentHashMap<>();
+
+  private static final ReferenceQueue<byte[]> COLLECTED = new ReferenceQueue<>();
+
+  private static class SharedPayload extends WeakReference<byte[]> {
+    private final Long key;
+
+    SharedPayload(Long key, byte[] payload) {
+      super(payload, COLLECTED);
+      this.key = key;
+    }
+  }
+
+  private final SnapshotStore store;
+
+  /** Hashes of the blobs known to exist, as read or written through this instance. */
+  private final Set<String> stored = ConcurrentHashMap.newKeySet();
+
+  SnapshotPayloads(SnapshotStore store) {
+    this.store = store;
+  }
+
+  /** The SHA-256 of the payload as lower case hex. */
+  static String hash(byte[] payload) {
+    try {
+      return toHex(MessageDigest.getInstance("SHA-256").digest(payload));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toHex(byte[] digest) {
+    char[] hex = new char[digest.length * 2];
+    for (int i = 0; i < digest.length; i++) {
+      hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+      hex[2 * i + 1] = HEX[digest[i] & 0xF];
+    }
+    return new String(hex);
+  }
+
+  /**
+   * Returns a payload with the same content that is shared by all loaded snapshots; payloads no
+   * longer referenced by any snapshot can be garbage collected. Payloads are not hashed with
+   * SHA-256 for this, only compared with loaded payloads of the same length and hash code.
+   */
+  static byte[] intern(byte[] payload) {
+    expungeCollected();
+    final Long key = ((long) payload.length << 32) | (Arrays.hashCode(payload) & 0xFFFFFFFFL);
+    final byte[][] interned = new byte[1][];
+    SHARED.compute(
+        key,
+        (k, shared) -> {
+          final List<SharedPayload> live = new ArrayList<>(shared == null ? 1 : shared.size() + 1);
+          if (shared != null) {
+            for (SharedPayload candidate : shared) {
+              byte[] existing = candidate.get();
+              if (existing != null) {
+                live.add(candidate);
+                if (interned[0] == null && Arrays.equals(existing, payload)) {
+                  interned[0] = existing;
+                }
+              }
+            }
+          }
+          if (interned[0] == null) {
+            live.add(new SharedPayload(k, payload));
+            interned[0] = payload;
+          }
+          return live;
+        });
+    return interned[0];
+  }
+
+  private static void expungeCollected() {
+    SharedPayload collected;
+    while ((collected = (SharedPayload) COLLECTED.poll()) != null) {
+      final SharedPayload cleared = collected;
+      SHARED.computeIfPresent(
+          cleared.key,
+          (k, shared) -> {
+            final List<SharedPayload> live = new ArrayList<>(shared);
+            live.remove(cleared);
+            return live.isEmpty() ? null : live;
+          });
+    }
+  }
+
+  /** Reads the payload with the given hash from the blob directory. */
+  byte[] read(String hash) {
+    String blob = blobName(hash);
+    try {
+      byte[] payload =
+          intern(
+              store
+                  .load(blob)
+                  .orElseThrow(
+                      () ->
+                          new SnapshotMatchException(
+                              "Snapshot payload " + blob + " does not exist")));
+      stored.add(hash);
+      return payload;
+    } catch (IOException e) {
+      throw new SnapshotMatchException("Unable to read snapshot payload " + blob + ": " + e);
+    }
+  }
+
+  /**
+   * Stores the payload with the given hash in the blob directory unless it is already there. Blobs
+   * are never changed once written, so concurrent writers of the same blob are harmless, and blobs
+   * read or written through this instance before are not checked again.
+   */
+  void write(String hash, byte[] payload) {
+    if (stored.contains(hash)) {
+      return;
+    }
+    String blob = blobName(hash);
+    try {
+      if (!store.contains(blob)) {
+        store.put(blob, current -> current.length > 0 ? current : payload);
+      }
+      stored.add(hash);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write snapshot payload " + blob, e);
+    }
+  }
+
+  private static String blobName(String hash) {
+    return BLOB_DIRECTORY + "/" + hash + BLOB_EXTENSION;
+  }
+}
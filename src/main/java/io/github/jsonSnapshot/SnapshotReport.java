@@ -0,0 +1,355 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import lombok.Value;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/** Size and latency figures of a test run, see {@link SnapshotConfig#getReportDirectory()}. */
+public class SnapshotReport {
+
+  private static Logger log = LoggerFactory.getLogger(SnapshotReport.class);
+
+  /** Named by process id, so that forked test JVMs sharing a directory write separate reports. */
+  private static final String FILE_NAME = "snapshot-report-" + processId();
+
+  static final String JSON_FILE_NAME = FILE_NAME + ".json";
+
+  static final String HTML_FILE_NAME = FILE_NAME + ".html";
+
+  private static final int RANKING_SIZE = 20;
+
+  private static SnapshotReport active;
+
+  private static String activeDirectory;
+
+  public enum Outcome {
+    MATCHED,
+    CREATED,
+    UPDATED,
+    FAILED
+  }
+
+  @Value
+  public static class SnapshotRecord {
+    private final String file;
+    private final String className;
+    private final String name;
+    private final int payloadBytes;
+    private final long serializationMicros;
+    private final long matchMicros;
+    private final String strategy;
+    private final Outcome outcome;
+
+    public long getTotalMicros() {
+      return serializationMicros + matchMicros;
+    }
+  }
+
+  @Value
+  public static class FileRecord {
+    private final String file;
+    private final long loadedBytes;
+    private final long loadMicros;
+    private final int writes;
+    private final long writtenBytes;
+    private final long writeMicros;
+    private final List<SnapshotRecord> entries;
+  }
+
+  @Value
+  public static class ClassLatency {
+    private final String className;
+    private final int snapshots;
+    private final long p50Micros;
+    private final long p90Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+  }
+
+  private final List<SnapshotRecord> snapshots = new ArrayList<>();
+
+  private final Map<String, long[]> fileLoads = new TreeMap<>();
+
+  private final Map<String, long[]> fileWrites = new TreeMap<>();
+
+  /** The report of the current run, or {@code null} if reporting is disabled. */
+  static synchronized SnapshotReport active() {
+    return active;
+  }
+
+  /** Starts collecting, for a report written to {@code directory} by {@link #writeActive()}. */
+  static synchronized void enable(String directory) {
+    if (active != null) {
+      return;
+    }
+    active = new SnapshotReport();
+    activeDirectory = directory;
+  }
+
+  /**
+   * Writes the report of the current run, if enabled. Called by the shutdown hook of {@link
+   * SnapshotMatcher} once the sessions still open have written their snapshots.
+   */
+  static void writeActive() {
+    final SnapshotReport report;
+    final String directory;
+    synchronized (SnapshotReport.class) {
+      report = active;
+      directory = activeDirectory;
+    }
+    if (report == null) {
+      return;
+    }
+    try {
+      report.write(Paths.get(directory));
+    } catch (IOException e) {
+      log.warn("Unable to write snapshot report to " + directory, e);
+    }
+  }
+
+  synchronized void recordSnapshot(SnapshotRecord record) {
+    snapshots.add(record);
+  }
+
+  synchronized void recordFileLoad(String file, long bytes, long nanos) {
+    long[] load = fileLoads.computeIfAbsent(file, key -> new long[2]);
+    load[0] += bytes;
+    load[1] += nanos;
+  }
+
+  synchronized void recordFileWrite(String file, long bytes, long nanos) {
+    long[] write = fileWrites.computeIfAbsent(file, key -> new long[3]);
+    write[0]++;
+    write[1] += bytes;
+    write[2] += nanos;
+  }
+
+  static long toMicros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  synchronized Map<String, Object> build() {
+    Map<String, List<SnapshotRecord>> entriesByFile =
+        snapshots
+            .stream()
+            .collect(
+                Collectors.groupingBy(SnapshotRecord::getFile, TreeMap::new, Collectors.toList()));
+    for (String file : fileLoads.keySet()) {
+      entriesByFile.putIfAbsent(file, new ArrayList<>());
+    }
+    for (String file : fileWrites.keySet()) {
+      entriesByFile.putIfAbsent(file, new ArrayList<>());
+    }
+
+    List<FileRecord> files = new ArrayList<>();
+    for (Map.Entry<String, List<SnapshotRecord>> entry : entriesByFile.entrySet()) {
+      long[] load = fileLoads.getOrDefault(entry.getKey(), new long[2]);
+      long[] write = fileWrites.getOrDefault(entry.getKey(), new long[3]);
+      files.add(
+          new FileRecord(
+              entry.getKey(),
+              load[0],
+              toMicros(load[1]),
+              (int) write[0],
+              write[1],
+              toMicros(write[2]),
+              entry.getValue()));
+    }
+
+    Map<String, List<SnapshotRecord>> snapshotsByClass =
+        snapshots.stream().collect(Collectors.groupingBy(SnapshotRecord::getClassName));
+    List<ClassLatency> classes = new ArrayList<>();
+    for (Map.Entry<String, List<SnapshotRecord>> entry : snapshotsByClass.entrySet()) {
+      long[] latencies =
+          entry.getValue().stream().mapToLong(SnapshotRecord::getTotalMicros).sorted().toArray();
+      classes.add(
+          new ClassLatency(
+              entry.getKey(),
+              latencies.length,
+              percentile(latencies, 50),
+              percentile(latencies, 90),
+              percentile(latencies, 99),
+              latencies[latencies.length - 1]));
+    }
+    classes.sort(Comparator.comparingLong(ClassLatency::getP99Micros).reversed());
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("slowest", top(Comparator.comparingLong(SnapshotRecord::getTotalMicros)));
+    report.put("largest", top(Comparator.comparingInt(SnapshotRecord::getPayloadBytes)));
+    report.put("classes", classes);
+    report.put("files", files);
+    return report;
+  }
+
+  private List<SnapshotRecord> top(Comparator<SnapshotRecord> comparator) {
+    return snapshots
+        .stream()
+        .sorted(comparator.reversed())
+        .limit(RANKING_SIZE)
+        .collect(Collectors.toList());
+  }
+
+  /** Nearest-rank percentile of the given sorted values. */
+  static long percentile(long[] sortedValues, int percentile) {
+    int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.length);
+    return sortedValues[Math.max(rank, 1) - 1];
+  }
+
+  void write(Path directory) throws IOException {
+    Map<String, Object> report = build();
+    Files.createDirectories(directory);
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    objectMapper.writeValue(directory.resolve(JSON_FILE_NAME).toFile(), report);
+
+    Files.write(directory.resolve(HTML_FILE_NAME), toHtml(report).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static String toHtml(Map<String, Object> report) {
+    StringBuilder html = new StringBuilder();
+    html.append("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\">")
+        .append("<title>Snapshot report</title></head><body>\n");
+
+    String[] snapshotColumns = {
+      "File", "Name", "Bytes", "Serialization us", "Match us", "Strategy", "Outcome"
+    };
+    appendSnapshotTable(
+        html, "Slowest snapshots", snapshotColumns, (List<SnapshotRecord>) report.get("slowest"));
+    appendSnapshotTable(
+        html, "Largest snapshots", snapshotColumns, (List<SnapshotRecord>) report.get("largest"));
+
+    appendTable(
+        html,
+        "Latency per class",
+        new String[] {"Class", "Snapshots", "p50 us", "p90 us", "p99 us", "max us"},
+        ((List<ClassLatency>) report.get("classes"))
+            .stream()
+            .map(
+                c ->
+                    Arrays.<Object>asList(
+                        c.getClassName(),
+                        c.getSnapshots(),
+                        c.getP50Micros(),
+                        c.getP90Micros(),
+                        c.getP99Micros(),
+                        c.getMaxMicros()))
+            .collect(Collectors.toList()));
+
+    appendTable(
+        html,
+        "Files",
+        new String[] {
+          "File", "Entries", "Loaded bytes", "Load us", "Writes", "Written bytes", "Write us"
+        },
+        ((List<FileRecord>) report.get("files"))
+            .stream()
+            .map(
+                f ->
+                    Arrays.<Object>asList(
+                        f.getFile(),
+                        f.getEntries().size(),
+                        f.getLoadedBytes(),
+                        f.getLoadMicros(),
+                        f.getWrites(),
+                        f.getWrittenBytes(),
+                        f.getWriteMicros()))
+            .collect(Collectors.toList()));
+
+    return html.append("</body></html>\n").toString();
+  }
+
+  private static void appendSnapshotTable(
+      StringBuilder html, String title, String[] columns, List<SnapshotRecord> records) {
+    appendTable(
+        html,
+        title,
+        columns,
+        records
+            .stream()
+            .map(
+                r ->
+                    Arrays.<Object>asList(
+                        r.getFile(),
+                        r.getName(),
+                        r.getPayloadBytes(),
+                        r.getSerializationMicros(),
+                        r.getMatchMicros(),
+                        r.getStrategy(),
+                        r.getOutcome()))
+            .collect(Collectors.toList()));
+  }
+
+  private static void appendTable(
+      StringBuilder html, String title, String[] columns, List<List<Object>> rows) {
+    html.append("<h2>").append(escapeHtml(title)).append("</h2>\n<table>\n<tr>");
+    for (String column : columns) {
+      html.append("<th>").append(escapeHtml(column)).append("</th>");
+    }
+    html.append("</tr>\n");
+    for (List<Object> row : rows) {
+      html.append("<tr>");
+      for (Object cell : row) {
+        html.append("<td>").append(escapeHtml(String.valueOf(cell))).append("</td>");
+      }
+      html.append("</tr>\n");
+    }
+    html.append("</table>\n");
+  }
+
+  /** Escapes the characters with a meaning in HTML text and attribute values. */
+  private static String escapeHtml(String text) {
+    StringBuilder escaped = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '&':
+          escaped.append("&amp;");
+          break;
+        case '<':
+          escaped.append("&lt;");
+          break;
+        case '>':
+          escaped.append("&gt;");
+          break;
+        case '"':
+          escaped.append("&quot;");
+          break;
+        case '\'':
+          escaped.append("&#39;");
+          break;
+        default:
+          escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  /** The id of this JVM process, from its runtime name {@code <pid>@<host>}. */
+  private static String processId() {
+    String name = ManagementFactory.getRuntimeMXBean().getName();
+    int at = name.indexOf('@');
+    return at > 0 ? name.substring(0, at) : name;
+  }
+}
@@ -0,0 +1,11 @@
+package io.github.jsonSnapshot;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks a class for {@link io.github.jsonSnapshot.processor.SnapshotSerializerProcessor}. */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface SnapshotSerializable {}
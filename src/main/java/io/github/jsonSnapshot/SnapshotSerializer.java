@@ -0,0 +1,40 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/** Base class of the serializers generated for {@link SnapshotSerializable} classes. */
+public abstract class SnapshotSerializer<T> extends StdSerializer<T> {
+
+  protected SnapshotSerializer(Class<T> type) {
+    super(type);
+  }
+
+  @Override
+  public final void serialize(T value, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+    gen.writeStartObject(value);
+    try {
+      serializeFields(value, gen, provider);
+    } catch (StackOverflowError e) {
+      throw JsonMappingException.from(gen, "Infinite recursion (StackOverflowError)", e);
+    }
+    gen.writeEndObject();
+  }
+
+  protected abstract void serializeFields(T value, JsonGenerator gen, SerializerProvider provider)
+      throws IOException;
+
+  protected static void writeField(
+      String name, Object value, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+    if (value != null) {
+      gen.writeFieldName(name);
+      provider.defaultSerializeValue(value, gen);
+    }
+  }
+}
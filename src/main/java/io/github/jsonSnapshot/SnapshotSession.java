@@ -0,0 +1,114 @@
+package io.github.jsonSnapshot;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The snapshots of one test class, from {@link SnapshotMatcher#start()} until it is closed by
+ * {@link SnapshotMatcher#validateSnapshots()}. A session only remembers the names of the snapshots
+ * taken; the {@code expect} arguments are released as soon as they are matched.
+ */
+public class SnapshotSession implements AutoCloseable {
+
+  private static Logger log = LoggerFactory.getLogger(SnapshotSession.class);
+
+  private final Class<?> testClass;
+
+  private final SnapshotFile snapshotFile;
+
+  private final Function<Object, String> serializeFunction;
+
+  private final SnapshotMatchingStrategy snapshotMatchingStrategy;
+
+  private final Set<String> calledSnapshotNames = new HashSet<>();
+
+  private boolean closed;
+
+  SnapshotSession(
+      Class<?> testClass,
+      SnapshotFile snapshotFile,
+      Function<Object, String> serializeFunction,
+      SnapshotMatchingStrategy snapshotMatchingStrategy) {
+    this.testClass = testClass;
+    this.snapshotFile = snapshotFile;
+    this.serializeFunction = serializeFunction;
+    this.snapshotMatchingStrategy = snapshotMatchingStrategy;
+  }
+
+  Class<?> getTestClass() {
+    return testClass;
+  }
+
+  /**
+   * Closes a session its test class did not close with {@link SnapshotMatcher#validateSnapshots()},
+   * e.g. because an {@code @AfterAll} method is missing, so that no recorded snapshot is lost.
+   */
+  void closeAbandoned(String reason) {
+    if (closed) {
+      return;
+    }
+    if (snapshotFile.hasUnwrittenSnapshots()) {
+      log.warn(
+          "Snapshot session of {} was not closed by SnapshotMatcher.validateSnapshots(), writing"
+              + " its pending snapshots because {}",
+          testClass.getName(),
+          reason);
+    }
+    close();
+  }
+
+  /**
+   * A snapshot of the given objects for the test method, optionally distinguished by {@code key}.
+   */
+  Snapshot newSnapshot(Method method, String key, Object[] objects) {
+    if (closed) {
+      throw new SnapshotMatchException(
+          "Snapshot session of " + testClass.getName() + " is already closed");
+    }
+    Snapshot snapshot =
+        new Snapshot(
+            snapshotFile,
+            testClass,
+            method,
+            key,
+            serializeFunction,
+            snapshotMatchingStrategy,
+            objects);
+    if (!calledSnapshotNames.add(snapshot.getSnapshotName())) {
+      throw new SnapshotMatchException(
+          "You can only call 'expect' once per test method. Try using array of arguments on a single 'expect' call");
+    }
+    return snapshot;
+  }
+
+  /** Writes pending snapshots and warns about stored snapshots no test asked for. */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    snapshotFile.flush();
+    List<SnapshotDataItem> unusedRawSnapshots = new ArrayList<>();
+
+    for (SnapshotDataItem storedSnapshot : snapshotFile.getStoredSnapshots().getItems()) {
+      if (!calledSnapshotNames.contains(storedSnapshot.getName())) {
+        unusedRawSnapshots.add(storedSnapshot);
+      }
+    }
+    if (unusedRawSnapshots.size() > 0) {
+      log.warn(
+          "All unused Snapshots: "
+              + StringUtils.join(unusedRawSnapshots, "\n")
+              + ". Consider deleting the snapshot file to recreate it!");
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package io.github.jsonSnapshot;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/** Keeps the raw content of snapshot files, see {@link SnapshotConfig#getSnapshotStore()}. */
+public interface SnapshotStore {
+
+  /** The content of the named file, or empty if there is no such file. */
+  Optional<byte[]> load(String fileName) throws IOException;
+
+  /** Whether the named file exists. */
+  boolean contains(String fileName) throws IOException;
+
+  /**
+   * Replaces the content of the named file by {@code merge} applied to its current content, an
+   * empty array for a new file. Stores shared by several writers apply {@code merge} under a lock,
+   * so that changes of other writers are merged instead of lost; it may be applied more than once.
+   * The merge of a later put of the same file includes the changes of the earlier ones, so stores
+   * that keep changes in memory only need to apply the latest merge.
+   */
+  void put(String fileName, UnaryOperator<byte[]> merge) throws IOException;
+
+  /** Persists changes that {@link #put(String, UnaryOperator)} only kept in memory. */
+  default void flush() throws IOException {}
+}
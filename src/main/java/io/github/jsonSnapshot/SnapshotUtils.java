@@ -3,13 +3,18 @@ package io.github.jsonSnapshot;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
 
+import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
 
 public class SnapshotUtils {
 
@@ -39,6 +44,65 @@ public class SnapshotUtils {
     return process(object, methodName, captors, classes, null);
   }
 
+  /**
+   * Extracts the arguments of several methods of the same mock at once. The mock's invocation log
+   * is read a single time and grouped by method, instead of running one Mockito verification per
+   * method as {@link #extractArgs(Object, String, SnapshotCaptor...)} does.
+   *
+   * @param methodCaptors method name to the captors describing its parameters, in the order in
+   *     which the entries should appear in the result
+   * @return one entry per requested method, in the same format as {@code extractArgs}
+   */
+  public static <T> LinkedHashMap<String, List<LinkedHashMap<String, Object>>> extractAllArgs(
+      T object, Map<String, SnapshotCaptor[]> methodCaptors) {
+    String classPrefix = object.getClass().getSuperclass().getSimpleName() + ".";
+
+    Map<String, Class[]> methodClasses = new HashMap<>();
+    LinkedHashMap<String, List<LinkedHashMap<String, Object>>> result = new LinkedHashMap<>();
+    for (Map.Entry<String, SnapshotCaptor[]> entry : methodCaptors.entrySet()) {
+      methodClasses.put(entry.getKey(), getParameterClasses(entry.getValue()));
+      result.put(classPrefix + entry.getKey(), new ArrayList<>());
+    }
+
+    try {
+      for (Invocation invocation : Mockito.mockingDetails(object).getInvocations()) {
+        Method method = invocation.getMethod();
+        Class[] classes = methodClasses.get(method.getName());
+        if (classes == null || !Arrays.equals(classes, method.getParameterTypes())) {
+          continue;
+        }
+
+        SnapshotCaptor[] snapshotCaptors = methodCaptors.get(method.getName());
+        Parameter[] parameters = method.getParameters();
+        Object[] arguments = invocation.getArguments();
+
+        LinkedHashMap<String, Object> objectMap = new LinkedHashMap<>();
+        for (int j = 0; j < snapshotCaptors.length; j++) {
+          objectMap.put(parameters[j].getName(), snapshotCaptors[j].removeIgnored(arguments[j]));
+        }
+        result.get(classPrefix + method.getName()).add(objectMap);
+        invocation.markVerified();
+      }
+    } catch (Exception e) {
+      throw new SnapshotMatchException(e.getMessage(), e.getCause());
+    }
+
+    for (Map.Entry<String, List<LinkedHashMap<String, Object>>> entry : result.entrySet()) {
+      if (entry.getValue().isEmpty()) {
+        throw new SnapshotMatchException("Wanted but not invoked: " + entry.getKey());
+      }
+    }
+    return result;
+  }
+
+  private static Class[] getParameterClasses(SnapshotCaptor[] snapshotCaptors) {
+    Class[] classes = new Class[snapshotCaptors.length];
+    for (int i = 0; i < snapshotCaptors.length; i++) {
+      classes[i] = snapshotCaptors[i].getParameterClass();
+    }
+    return classes;
+  }
+
   private static <T> HashMap<String, List<LinkedHashMap<String, Object>>> process(
       T object,
       String methodName,
@@ -47,29 +111,27 @@ public class SnapshotUtils {
       SnapshotCaptor[] snapshotCaptors) {
     HashMap<String, List<LinkedHashMap<String, Object>>> result = new HashMap<>();
     try {
-      Parameter[] parameters =
-          object.getClass().getDeclaredMethod(methodName, classes).getParameters();
+      Method method = object.getClass().getDeclaredMethod(methodName, classes);
+      Parameter[] parameters = method.getParameters();
 
-      object
-          .getClass()
-          .getDeclaredMethod(methodName, classes)
-          .invoke(
-              verify(object, atLeastOnce()),
-              captors.stream().map(ArgumentCaptor::capture).toArray());
+      method.invoke(
+          verify(object, atLeastOnce()), captors.stream().map(ArgumentCaptor::capture).toArray());
 
       List<LinkedHashMap<String, Object>> extractedObjects = new ArrayList<>();
 
-      int numberOfCall;
-
       if (captors.size() > 0) {
-        numberOfCall = captors.get(0).getAllValues().size();
+        List<List> capturedValues = new ArrayList<>(captors.size());
+        for (ArgumentCaptor captor : captors) {
+          capturedValues.add(captor.getAllValues());
+        }
+        int numberOfCall = capturedValues.get(0).size();
 
         for (int i = 0; i < numberOfCall; i++) {
           LinkedHashMap<String, Object> objectMap = new LinkedHashMap<>();
 
           int j = 0;
-          for (ArgumentCaptor captor : captors) {
-            Object value = captor.getAllValues().get(i);
+          for (List values : capturedValues) {
+            Object value = values.get(i);
             if (snapshotCaptors != null) {
               value = snapshotCaptors[j].removeIgnored(value);
             }
@@ -0,0 +1,150 @@
+package io.github.jsonSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * All snapshot files of a module in one zip archive, read with random access through the archive's
+ * central directory instead of opening one file per test class. Changes are kept in memory and
+ * written by {@link #flush()}, i.e. when a test class validates its snapshots, by rewriting the
+ * archive under an exclusive lock on {@code <archive>.lock}; the changes are merged with the
+ * archive as it is then, so parallel test JVMs do not lose each other's snapshots. The archive is
+ * kept open for reading until the next flush.
+ */
+public class ZipSnapshotStore implements SnapshotStore {
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final Path archive;
+
+  private ZipFile zipFile;
+
+  /**
+   * The latest merge of {@link #put(String, UnaryOperator)} per file not yet written, which
+   * includes the changes of the earlier ones.
+   */
+  private final Map<String, UnaryOperator<byte[]>> pending = new LinkedHashMap<>();
+
+  /** The latest content of files with pending merges. */
+  private final Map<String, byte[]> changed = new TreeMap<>();
+
+  public ZipSnapshotStore(Path archive) {
+    this.archive = archive;
+  }
+
+  @Override
+  public synchronized Optional<byte[]> load(String fileName) throws IOException {
+    byte[] content = changed.get(fileName);
+    return content != null ? Optional.of(content) : read(fileName);
+  }
+
+  @Override
+  public synchronized boolean contains(String fileName) throws IOException {
+    return changed.containsKey(fileName) || read(fileName).isPresent();
+  }
+
+  @Override
+  public synchronized void put(String fileName, UnaryOperator<byte[]> merge) throws IOException {
+    byte[] current =
+        changed.containsKey(fileName) ? changed.get(fileName) : read(fileName).orElse(EMPTY);
+    changed.put(fileName, merge.apply(current));
+    pending.put(fileName, merge);
+  }
+
+  private Optional<byte[]> read(String fileName) throws IOException {
+    if (zipFile == null) {
+      if (!Files.exists(archive)) {
+        return Optional.empty();
+      }
+      zipFile = new ZipFile(archive.toFile());
+    }
+    ZipEntry entry = zipFile.getEntry(fileName);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    try (InputStream in = zipFile.getInputStream(entry)) {
+      return Optional.of(readAll(in));
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+      out.write(chunk, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    // reopened by the next read, so that no handle stays open once a test class is done
+    closeZipFile();
+    if (pending.isEmpty()) {
+      return;
+    }
+    Path directory = archive.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path lockFile = directory.resolve(archive.getFileName() + ".lock");
+    try (FileChannel channel =
+            FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = channel.lock()) {
+      Map<String, byte[]> files = new TreeMap<>();
+      if (Files.exists(archive)) {
+        try (ZipFile current = new ZipFile(archive.toFile())) {
+          Enumeration<? extends ZipEntry> entries = current.entries();
+          while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            try (InputStream in = current.getInputStream(entry)) {
+              files.put(entry.getName(), readAll(in));
+            }
+          }
+        }
+      }
+      for (Map.Entry<String, UnaryOperator<byte[]>> merge : pending.entrySet()) {
+        files.put(
+            merge.getKey(), merge.getValue().apply(files.getOrDefault(merge.getKey(), EMPTY)));
+      }
+
+      Path temp = Files.createTempFile(directory, archive.getFileName().toString(), ".tmp");
+      try {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(temp))) {
+          for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            out.putNextEntry(new ZipEntry(file.getKey()));
+            out.write(file.getValue());
+            out.closeEntry();
+          }
+        }
+        Files.move(
+            temp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+      pending.clear();
+      changed.clear();
+    }
+  }
+
+  private void closeZipFile() throws IOException {
+    if (zipFile != null) {
+      zipFile.close();
+      zipFile = null;
+    }
+  }
+}
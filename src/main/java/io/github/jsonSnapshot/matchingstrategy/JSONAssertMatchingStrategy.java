@@ -26,18 +26,31 @@ public class JSONAssertMatchingStrategy implements SnapshotMatchingStrategy {
   @Override
   public void match(
       @NonNull final SnapshotDataItem expectedSnapshotItem, @NonNull final String actualData) {
+    match(expectedSnapshotItem, actualData, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void match(
+      @NonNull final SnapshotDataItem expectedSnapshotItem,
+      @NonNull final String actualData,
+      final int previewLength) {
     try {
       JSONAssert.assertEquals(expectedSnapshotItem.getData(), actualData, compareMode);
 
     } catch (JSONException e) {
-      final String error =
-          "JSONAssertMatchRule - error with compareMode="
-              + compareMode
-              + ": Error on: \n"
-              + actualData.trim()
-              + "\n\n"
-              + e.getMessage();
-      throw new SnapshotMatchException(error, e);
+      throw new SnapshotMatchException(error(actualData, e, previewLength), e);
+    } catch (AssertionError e) {
+      // a mismatch; the cause is left out, its message is not limited to the preview
+      throw new SnapshotMatchException(error(actualData, e, previewLength));
     }
   }
+
+  private String error(final String actualData, final Throwable e, final int previewLength) {
+    return "JSONAssertMatchRule - error with compareMode="
+        + compareMode
+        + ": Error on: \n"
+        + SnapshotMatchingStrategy.preview(actualData.trim(), previewLength)
+        + "\n\n"
+        + SnapshotMatchingStrategy.preview(e.getMessage(), previewLength);
+  }
 }
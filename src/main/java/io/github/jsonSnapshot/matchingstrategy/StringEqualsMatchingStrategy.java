@@ -19,18 +19,23 @@ public class StringEqualsMatchingStrategy implements SnapshotMatchingStrategy {
   @Override
   public void match(
       @NonNull final SnapshotDataItem expectedSnapshotItem, @NonNull final String currentObject) {
-    final String rawSnapshotStr = expectedSnapshotItem.getData();
-
-    final String snapShotEOLNormalized = rawSnapshotStr.trim().replaceAll("\\R", "\n");
-    final String currentObjectEOLNormalized = currentObject.trim().trim().replaceAll("\\R", "\n");
+    match(expectedSnapshotItem, currentObject, Integer.MAX_VALUE);
+  }
 
-    if (!snapShotEOLNormalized.equals(currentObjectEOLNormalized)) {
-      throw generateDiffError(rawSnapshotStr, currentObject);
+  @Override
+  public void match(
+      @NonNull final SnapshotDataItem expectedSnapshotItem,
+      @NonNull final String currentObject,
+      final int previewLength) {
+    if (!expectedSnapshotItem.dataEqualsIgnoringLineBreaks(currentObject)) {
+      throw generateDiffError(expectedSnapshotItem.getData(), currentObject, previewLength);
     }
   }
 
   private SnapshotMatchException generateDiffError(
-      @NonNull final String rawSnapshot, @NonNull final String currentObject) {
+      @NonNull final String rawSnapshot,
+      @NonNull final String currentObject,
+      final int previewLength) {
     // compute the patch: this is the diffutils part
     final Patch<String> patch =
         DiffUtils.diff(
@@ -38,14 +43,16 @@ public class StringEqualsMatchingStrategy implements SnapshotMatchingStrategy {
             Arrays.asList(currentObject.trim().split("\\R")));
     final String error =
         "StringEqualsMatchRule - error on: \n"
-            + currentObject.trim()
+            + SnapshotMatchingStrategy.preview(currentObject.trim(), previewLength)
             + "\n\n"
-            + patch
-                .getDeltas()
-                .stream()
-                .map(delta -> delta.toString() + "\n")
-                .reduce(String::concat)
-                .get();
+            + SnapshotMatchingStrategy.preview(
+                patch
+                    .getDeltas()
+                    .stream()
+                    .map(delta -> delta.toString() + "\n")
+                    .reduce(String::concat)
+                    .get(),
+                previewLength);
     return new SnapshotMatchException(error);
   }
 }
@@ -0,0 +1,366 @@
+package io.github.jsonSnapshot.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import io.github.jsonSnapshot.SnapshotSerializable;
+import io.github.jsonSnapshot.SnapshotSerializer;
+
+/**
+ * Generates a {@link SnapshotSerializer} for every {@link SnapshotSerializable} class whose fields
+ * it can read directly, and warns about the others.
+ */
+public class SnapshotSerializerProcessor extends AbstractProcessor {
+
+  static final String SERIALIZER_SUFFIX = "_SnapshotSerializer";
+
+  private static final String SERVICE_FILE =
+      "META-INF/services/" + SnapshotSerializer.class.getName();
+
+  private static final String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+
+  private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+
+  private static final String JACKSON_PACKAGE = "com.fasterxml.jackson.";
+
+  private static final String JACKSON_ANNOTATIONS_INSIDE =
+      "com.fasterxml.jackson.annotation.JacksonAnnotationsInside";
+
+  private final Set<String> generatedSerializers = new TreeSet<>();
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(SnapshotSerializable.class.getName());
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getElementsAnnotatedWith(SnapshotSerializable.class)) {
+      if (isSupported(element)) {
+        generateSerializer((TypeElement) element);
+      }
+    }
+    if (roundEnv.processingOver() && !generatedSerializers.isEmpty()) {
+      writeServiceFile();
+    }
+    return true;
+  }
+
+  private boolean isSupported(Element element) {
+    if (element.getKind() != ElementKind.CLASS) {
+      return error(element, "@SnapshotSerializable is only supported on classes");
+    }
+    TypeElement type = (TypeElement) element;
+    if (type.getModifiers().contains(Modifier.PRIVATE)) {
+      return error(element, "@SnapshotSerializable classes must not be private");
+    }
+    if (type.getNestingKind() == NestingKind.MEMBER
+        && !type.getModifiers().contains(Modifier.STATIC)) {
+      return error(element, "@SnapshotSerializable nested classes must be static");
+    }
+    if (type.getNestingKind() == NestingKind.LOCAL
+        || type.getNestingKind() == NestingKind.ANONYMOUS) {
+      return error(element, "@SnapshotSerializable is not supported on local classes");
+    }
+    return true;
+  }
+
+  private boolean error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    return false;
+  }
+
+  private void generateSerializer(TypeElement type) {
+    PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+    String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+    String simpleName = serializerSimpleName(type);
+    String typeName = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+
+    String unsupported = findUnsupported(type, packageName);
+    if (unsupported != null) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.WARNING,
+              "No snapshot serializer generated, "
+                  + type.getQualifiedName()
+                  + " is serialized with reflection: "
+                  + unsupported,
+              type);
+      return;
+    }
+
+    List<String> statements = new ArrayList<>();
+    List<String> renamedStatements = new ArrayList<>();
+    for (VariableElement field : serializedFields(type)) {
+      String fieldName = field.getSimpleName().toString();
+      String jsonName = javaString(jsonName(field));
+      // Like Jackson, renamed properties are written after all others
+      List<String> target = jsonName.equals(javaString(fieldName)) ? statements : renamedStatements;
+      target.add("writeField(" + jsonName + ", value." + fieldName + ", gen, provider);");
+    }
+    statements.addAll(renamedStatements);
+
+    String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    try (Writer writer =
+        processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+      if (!packageName.isEmpty()) {
+        writer.write("package " + packageName + ";\n\n");
+      }
+      writer.write("import java.io.IOException;\n\n");
+      writer.write("import com.fasterxml.jackson.core.JsonGenerator;\n");
+      writer.write("import com.fasterxml.jackson.databind.SerializerProvider;\n\n");
+      writer.write("/** Generated by " + getClass().getName() + ", do not edit. */\n");
+      writer.write("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+      writer.write(
+          "public final class "
+              + simpleName
+              + " extends "
+              + SnapshotSerializer.class.getName()
+              + "<"
+              + typeName
+              + "> {\n\n");
+      writer.write("  public " + simpleName + "() {\n");
+      writer.write("    super(" + typeName + ".class);\n  }\n\n");
+      writer.write("  @Override\n");
+      writer.write(
+          "  protected void serializeFields("
+              + typeName
+              + " value, JsonGenerator gen, SerializerProvider provider)\n"
+              + "      throws IOException {\n");
+      for (String statement : statements) {
+        writer.write("    " + statement + "\n");
+      }
+      writer.write("  }\n}\n");
+      generatedSerializers.add(qualifiedName);
+    } catch (IOException e) {
+      error(type, "Unable to write snapshot serializer: " + e.getMessage());
+    }
+  }
+
+  private static String serializerSimpleName(TypeElement type) {
+    StringBuilder name = new StringBuilder(type.getSimpleName());
+    Element enclosing = type.getEnclosingElement();
+    while (enclosing instanceof TypeElement) {
+      name.insert(0, enclosing.getSimpleName() + "_");
+      enclosing = enclosing.getEnclosingElement();
+    }
+    return name.append(SERIALIZER_SUFFIX).toString();
+  }
+
+  /**
+   * Why the generated code would not write what Jackson writes for the type, or {@code null} if it
+   * would.
+   */
+  private String findUnsupported(TypeElement type, String packageName) {
+    for (TypeElement declaringType = type;
+        declaringType != null;
+        declaringType = superclassOf(declaringType)) {
+      String annotation = findJacksonAnnotation(declaringType);
+      if (annotation != null) {
+        return declaringType.getQualifiedName() + " is annotated with @" + annotation;
+      }
+      for (ExecutableElement method :
+          ElementFilter.methodsIn(declaringType.getEnclosedElements())) {
+        annotation = findJacksonAnnotation(method);
+        if (annotation != null) {
+          return "method " + method.getSimpleName() + " is annotated with @" + annotation;
+        }
+      }
+    }
+    Set<String> jsonNames = new HashSet<>();
+    for (VariableElement field : serializedFields(type)) {
+      String fieldName = field.getSimpleName().toString();
+      if (!jsonNames.add(jsonName(field))) {
+        return "field "
+            + fieldName
+            + " of "
+            + field.getEnclosingElement().getSimpleName()
+            + " has the same JSON name as another field";
+      }
+      if (!isDirectlyAccessible(field, (TypeElement) field.getEnclosingElement(), packageName)) {
+        return "field " + fieldName + " is not accessible from its package";
+      }
+      for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+        String name = annotationName(annotation);
+        boolean nameOnly =
+            name.equals(JSON_PROPERTY)
+                && annotation
+                    .getElementValues()
+                    .keySet()
+                    .stream()
+                    .allMatch(attribute -> attribute.getSimpleName().contentEquals("value"));
+        if (!nameOnly && isJacksonAnnotation(annotation)) {
+          return "field " + fieldName + " is annotated with @" + simpleName(name);
+        }
+      }
+      TypeMirror fieldType = field.asType();
+      if (fieldType.getKind() == TypeKind.DECLARED) {
+        String annotation = findJacksonAnnotation(((DeclaredType) fieldType).asElement());
+        if (annotation != null) {
+          return "the type of field " + fieldName + " is annotated with @" + annotation;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** The fields Jackson serializes with the field visibility of the default JSON function. */
+  private List<VariableElement> serializedFields(TypeElement type) {
+    List<VariableElement> fields = new ArrayList<>();
+    for (VariableElement field : collectFields(type)) {
+      if (!field.getModifiers().contains(Modifier.STATIC)
+          && !field.getModifiers().contains(Modifier.TRANSIENT)
+          && !hasAnnotation(field, JSON_IGNORE)) {
+        fields.add(field);
+      }
+    }
+    return fields;
+  }
+
+  private static TypeElement superclassOf(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    TypeElement superType = (TypeElement) ((DeclaredType) superclass).asElement();
+    return Object.class.getName().equals(superType.getQualifiedName().toString())
+        ? null
+        : superType;
+  }
+
+  /** The simple name of a Jackson annotation of the element, other than {@code @JsonIgnore}. */
+  private static String findJacksonAnnotation(Element element) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      if (isJacksonAnnotation(annotation) && !annotationName(annotation).equals(JSON_IGNORE)) {
+        return simpleName(annotationName(annotation));
+      }
+    }
+    return null;
+  }
+
+  /** Whether Jackson interprets the annotation, including custom ones bundling Jackson's. */
+  private static boolean isJacksonAnnotation(AnnotationMirror annotation) {
+    return annotationName(annotation).startsWith(JACKSON_PACKAGE)
+        || hasAnnotation(annotation.getAnnotationType().asElement(), JACKSON_ANNOTATIONS_INSIDE);
+  }
+
+  private static String annotationName(AnnotationMirror annotation) {
+    return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+  }
+
+  private static String simpleName(String qualifiedName) {
+    return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+  }
+
+  /** The fields of the type and its super classes, super class fields first. */
+  private List<VariableElement> collectFields(TypeElement type) {
+    List<VariableElement> fields = new ArrayList<>();
+    TypeElement superType = superclassOf(type);
+    if (superType != null) {
+      fields.addAll(collectFields(superType));
+    }
+    fields.addAll(ElementFilter.fieldsIn(type.getEnclosedElements()));
+    return fields;
+  }
+
+  private boolean isDirectlyAccessible(Element element, String packageName) {
+    if (element.getModifiers().contains(Modifier.PUBLIC)) {
+      return true;
+    }
+    return !element.getModifiers().contains(Modifier.PRIVATE)
+        && !element.getModifiers().contains(Modifier.PROTECTED)
+        && processingEnv
+            .getElementUtils()
+            .getPackageOf(element)
+            .getQualifiedName()
+            .contentEquals(packageName);
+  }
+
+  private boolean isDirectlyAccessible(
+      VariableElement field, TypeElement declaringType, String packageName) {
+    return isDirectlyAccessible(declaringType, packageName)
+        && isDirectlyAccessible(field, packageName);
+  }
+
+  private static boolean hasAnnotation(Element element, String annotationName) {
+    return findAnnotation(element, annotationName) != null;
+  }
+
+  private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+      if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static String jsonName(VariableElement field) {
+    AnnotationMirror jsonProperty = findAnnotation(field, JSON_PROPERTY);
+    if (jsonProperty != null) {
+      for (ExecutableElement attribute : jsonProperty.getElementValues().keySet()) {
+        if (attribute.getSimpleName().contentEquals("value")) {
+          AnnotationValue value = jsonProperty.getElementValues().get(attribute);
+          if (!value.getValue().toString().isEmpty()) {
+            return value.getValue().toString();
+          }
+        }
+      }
+    }
+    return field.getSimpleName().toString();
+  }
+
+  private static String javaString(String value) {
+    return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  private void writeServiceFile() {
+    try {
+      FileObject file =
+          processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+      try (Writer writer = file.openWriter()) {
+        for (String serializer : generatedSerializers) {
+          writer.write(serializer + "\n");
+        }
+      }
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, "Unable to write " + SERVICE_FILE + ": " + e);
+    }
+  }
+}
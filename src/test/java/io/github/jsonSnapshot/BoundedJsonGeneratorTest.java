@@ -0,0 +1,74 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedJsonGeneratorTest {
+
+  private final Function<Object, String> jsonFunction =
+      SnapshotMatcher.defaultJsonFunction(
+          new SnapshotConfig() {
+            @Override
+            public long getMaxSnapshotBytes() {
+              return 1000;
+            }
+
+            @Override
+            public int getMaxSnapshotDepth() {
+              return 5;
+            }
+
+            @Override
+            public int getMaxSnapshotCollectionSize() {
+              return 10;
+            }
+          });
+
+  @Test
+  void shouldRejectTooLargeCollection() {
+    List<Integer> items = IntStream.range(0, 11).boxed().collect(Collectors.toList());
+
+    SnapshotMatchException e =
+        assertThrows(
+            SnapshotMatchException.class,
+            () -> jsonFunction.apply(new Object[] {Collections.singletonMap("items", items)}));
+
+    assertThat(e.getMessage()).startsWith("Snapshot value at '/0/items' has more than 10 elements");
+  }
+
+  @Test
+  void shouldRejectTooDeepNesting() {
+    Map<String, Object> nested = Collections.singletonMap("leaf", 1);
+    for (int i = 0; i < 5; i++) {
+      nested = Collections.singletonMap("child", nested);
+    }
+    Object[] objects = {nested};
+
+    SnapshotMatchException e =
+        assertThrows(SnapshotMatchException.class, () -> jsonFunction.apply(objects));
+
+    assertThat(e.getMessage())
+        .startsWith(
+            "Snapshot value at '/0/child/child/child/child' is nested deeper than 5 levels");
+  }
+
+  @Test
+  void shouldRejectTooLargeOutput() {
+    List<String> texts = Collections.nCopies(10, String.join("", Collections.nCopies(200, "x")));
+
+    SnapshotMatchException e =
+        assertThrows(SnapshotMatchException.class, () -> jsonFunction.apply(new Object[] {texts}));
+
+    assertThat(e.getMessage()).contains("exceeds 1000 bytes of output");
+    assertThat(jsonFunction.apply(new Object[] {texts.subList(0, 2)})).contains("xxx");
+  }
+}
@@ -0,0 +1,69 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import lombok.AllArgsConstructor;
+
+import org.junit.jupiter.api.Test;
+
+class CanonicalJsonModuleTest {
+
+  private final Function<Object, String> jsonFunction =
+      SnapshotMatcher.defaultJsonFunction(
+          new SnapshotConfig() {
+            @Override
+            public boolean isCanonicalSnapshots() {
+              return true;
+            }
+          });
+
+  @AllArgsConstructor
+  private static class Order {
+    private Set<Object> tags;
+    private Map<String, Object> attributes;
+    private double total;
+    private BigDecimal discount;
+    private Float rate;
+  }
+
+  @Test
+  void shouldSerializeIndependentOfOrderAndNumberSpelling() {
+    Set<Object> tags =
+        new HashSet<>(Arrays.asList("b", "a", 10, new HashSet<>(Arrays.asList(2, 1))));
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("z", 1.0);
+    attributes.put("a", new BigDecimal("2.500"));
+
+    String json =
+        jsonFunction.apply(new Order(tags, attributes, 12.0, new BigDecimal("0.10"), 0.1f));
+
+    assertThat(json)
+        .isEqualTo(
+            "{\n"
+                + "  \"attributes\": {\n"
+                + "    \"a\": 2.5,\n"
+                + "    \"z\": 1\n"
+                + "  },\n"
+                + "  \"discount\": 0.1,\n"
+                + "  \"rate\": 0.1,\n"
+                + "  \"tags\": [\n"
+                + "    \"a\",\n"
+                + "    \"b\",\n"
+                + "    10,\n"
+                + "    [\n"
+                + "      1,\n"
+                + "      2\n"
+                + "    ]\n"
+                + "  ],\n"
+                + "  \"total\": 12\n"
+                + "}");
+  }
+}
@@ -0,0 +1,239 @@
+package io.github.jsonSnapshot;
+
+import static io.github.jsonSnapshot.SnapshotMatcher.expectWithKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+/**
+ * Fails when the hot paths of the library exceed their allocation or latency budget on fixed
+ * synthetic fixtures. Each measurement is the best of several runs after a warm-up.
+ *
+ * <p>Allocation counts depend on the JVM: without compact strings, e.g. on JDK 8, every string
+ * takes two bytes per character, and the counts are about twice those of JDK 9 and later. The
+ * allocation budgets are about twice the JDK 8 counts. Latency depends on the machine and its load,
+ * so the test is tagged {@code performance} and excluded from the normal test run; run it with
+ * {@code mvn test -Pperformance} on a dedicated agent.
+ */
+@Tag("performance")
+class PerformanceBudgetTest {
+
+  /** Bytes allocated per byte of snapshot by a matching {@code expect(...).toMatchSnapshot()}. */
+  private static final double MATCH_BYTES_PER_SNAPSHOT_BYTE = 36;
+
+  /** Milliseconds per megabyte of snapshot of a matching {@code expect(...).toMatchSnapshot()}. */
+  private static final long MATCH_MILLIS_PER_MEGABYTE = 1000;
+
+  /** Bytes allocated per byte of file by loading and parsing a snapshot file. */
+  private static final double LOAD_BYTES_PER_FILE_BYTE = 24;
+
+  /** Milliseconds per megabyte of file for loading and parsing a snapshot file. */
+  private static final long LOAD_MILLIS_PER_MEGABYTE = 250;
+
+  /** Bytes allocated per recorded invocation by {@link SnapshotUtils#extractArgs}. */
+  private static final long EXTRACT_ARGS_BYTES_PER_INVOCATION = 32 * 1024;
+
+  private static final int RUNS = 5;
+
+  private static final int PEOPLE = 500;
+
+  private static final InMemorySnapshotStore STORE = new InMemorySnapshotStore();
+
+  private static final String SNAP_FILE =
+      PerformanceBudgetTest.class.getName().replace('.', '/') + ".snap";
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+          ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()
+          : null;
+
+  @BeforeAll
+  static void beforeAll() throws IOException {
+    assumeTrue(
+        THREADS != null && THREADS.isThreadAllocatedMemorySupported(),
+        "thread allocation counters are not supported by this JVM");
+    THREADS.setThreadAllocatedMemoryEnabled(true);
+
+    // every run of the matching test finds its snapshot stored
+    StringBuilder stored = new StringBuilder();
+    String json = SnapshotMatcher.defaultJsonFunction().apply(new Object[] {people()});
+    for (int run = 0; run <= RUNS; run++) {
+      stored
+          .append(PerformanceBudgetTest.class.getName())
+          .append(".matchingExpectStaysWithinBudget[")
+          .append(run)
+          .append("]=")
+          .append(json)
+          .append("\n\n\n");
+    }
+    byte[] content = stored.toString().getBytes(StandardCharsets.UTF_8);
+    STORE.put(SNAP_FILE, current -> content);
+    SnapshotMatcher.start(
+        new DefaultConfig() {
+          @Override
+          public SnapshotStore getSnapshotStore() {
+            return STORE;
+          }
+        });
+  }
+
+  @AfterAll
+  static void afterAll() {
+    SnapshotMatcher.validateSnapshots();
+  }
+
+  @Test
+  void matchingExpectStaysWithinBudget() {
+    List<FakeObject> people = people();
+    long snapshotBytes =
+        SnapshotMatcher.defaultJsonFunction()
+            .apply(new Object[] {people})
+            .getBytes(StandardCharsets.UTF_8)
+            .length;
+
+    int[] run = {0};
+    Measurement match =
+        measure(() -> expectWithKey(String.valueOf(run[0]++), people).toMatchSnapshot());
+
+    assertThat(match.bytes)
+        .as("bytes allocated matching a snapshot of %d bytes", snapshotBytes)
+        .isLessThan((long) (snapshotBytes * MATCH_BYTES_PER_SNAPSHOT_BYTE));
+    assertThat(match.nanos / 1_000_000)
+        .as("milliseconds matching a snapshot of %d bytes", snapshotBytes)
+        .isLessThan(snapshotBytes * MATCH_MILLIS_PER_MEGABYTE / (1024 * 1024));
+  }
+
+  @Test
+  void loadingSnapshotFileStaysWithinBudget() throws IOException {
+    Path dir = Files.createTempDirectory("performanceBudgetTest");
+    Path file = dir.resolve("large.snap");
+    String json = SnapshotMatcher.defaultJsonFunction().apply(new Object[] {people()});
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; content.length() < 4 * 1024 * 1024; i++) {
+      content.append("a.b.snapshot").append(i).append('=').append(json).append("\n\n\n");
+    }
+    Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    long fileBytes = Files.size(file);
+    FileSystemSnapshotStore store = new FileSystemSnapshotStore(dir.toString() + "/");
+    try {
+      Measurement load =
+          measure(
+              () -> {
+                try {
+                  assertThat(
+                          new SnapshotFile(store, "large.snap", SnapshotFileOptions.DEFAULT)
+                              .getStoredSnapshots()
+                              .getItems())
+                      .isNotEmpty();
+                } catch (IOException e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+
+      double megabytes = fileBytes / (1024.0 * 1024.0);
+      assertThat(load.bytes)
+          .as("bytes allocated loading a file of %d bytes", fileBytes)
+          .isLessThan((long) (fileBytes * LOAD_BYTES_PER_FILE_BYTE));
+      assertThat(load.nanos / 1_000_000)
+          .as("milliseconds loading a file of %.1f MB", megabytes)
+          .isLessThan((long) (megabytes * LOAD_MILLIS_PER_MEGABYTE));
+    } finally {
+      Files.delete(file);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  void extractingArgsStaysWithinBudget() {
+    int invocations = 200;
+    FakeObject mock = Mockito.mock(FakeObject.class);
+
+    Measurement extract =
+        measure(
+            () -> {
+              Mockito.reset(mock);
+              for (int i = 0; i < invocations; i++) {
+                mock.fakeMethod("name" + i, (long) i, Arrays.asList("a", "b"));
+              }
+              long start = THREADS.getCurrentThreadAllocatedBytes();
+              SnapshotUtils.extractArgs(
+                  mock,
+                  "fakeMethod",
+                  new SnapshotCaptor(String.class),
+                  new SnapshotCaptor(Long.class),
+                  new SnapshotCaptor(List.class));
+              return THREADS.getCurrentThreadAllocatedBytes() - start;
+            });
+
+    assertThat(extract.bytes / invocations)
+        .as("bytes allocated extracting the arguments of one invocation")
+        .isLessThan(EXTRACT_ARGS_BYTES_PER_INVOCATION);
+  }
+
+  private static List<FakeObject> people() {
+    List<FakeObject> people = new ArrayList<>(PEOPLE);
+    for (int i = 0; i < PEOPLE; i++) {
+      people.add(
+          FakeObject.builder()
+              .id("id-" + i)
+              .value(i)
+              .name("Person " + i)
+              .fakeObject(FakeObject.builder().id("parent-" + i).build())
+              .build());
+    }
+    return people;
+  }
+
+  private static Measurement measure(Runnable operation) {
+    return measure(
+        () -> {
+          long start = THREADS.getCurrentThreadAllocatedBytes();
+          operation.run();
+          return THREADS.getCurrentThreadAllocatedBytes() - start;
+        });
+  }
+
+  /** The least bytes and time of {@link #RUNS} runs of the operation, after one warm-up run. */
+  private static Measurement measure(AllocatingOperation operation) {
+    operation.run();
+    Measurement best = new Measurement(Long.MAX_VALUE, Long.MAX_VALUE);
+    for (int i = 0; i < RUNS; i++) {
+      long start = System.nanoTime();
+      long bytes = operation.run();
+      long nanos = System.nanoTime() - start;
+      best = new Measurement(Math.min(best.bytes, bytes), Math.min(best.nanos, nanos));
+    }
+    return best;
+  }
+
+  /** Runs the measured operation and returns the bytes it allocated. */
+  private interface AllocatingOperation {
+    long run();
+  }
+
+  private static class Measurement {
+
+    private final long bytes;
+
+    private final long nanos;
+
+    Measurement(long bytes, long nanos) {
+      this.bytes = bytes;
+      this.nanos = nanos;
+    }
+  }
+}
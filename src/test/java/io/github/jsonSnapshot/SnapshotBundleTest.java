@@ -0,0 +1,52 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotBundleTest {
+
+  @Test
+  void shouldLoadCompiledFilesUntilTheyChange() throws IOException {
+    Path root = Files.createTempDirectory("snapshotBundleTest");
+    Path first = Files.createDirectories(root.resolve("a")).resolve("First.snap");
+    Path second = root.resolve("a/Second.snap");
+    write(first, "a.First.one=[\n  \"same\"\n]\n\n\na.First.two=[\n  \"same\"\n]");
+    write(second, "a.Second.three=[3]");
+    Path output = root.resolve("bundle/" + SnapshotBundle.RESOURCE_NAME);
+
+    try {
+      SnapshotBundle.compile(root, output);
+      SnapshotBundle bundle = new SnapshotBundle(ByteBuffer.wrap(Files.readAllBytes(output)));
+
+      SnapshotData data = bundle.load("a/First.snap", first).get();
+      assertThat(data.getItems()).extracting("name").containsExactly("a.First.one", "a.First.two");
+      SnapshotDataItem one = data.getItemByName("a.First.one").get();
+      assertThat(one.getData()).isEqualTo("[\n  \"same\"\n]");
+      assertThat(one.getUtf8Data()).isSameAs(data.getItemByName("a.First.two").get().getUtf8Data());
+      assertThat(bundle.load("a/Second.snap", second).get().getItems()).hasSize(1);
+      assertThat(bundle.load("a/Missing.snap", second)).isEmpty();
+
+      write(second, "a.Second.three=[33]");
+      assertThat(bundle.load("a/Second.snap", second)).isEmpty();
+    } finally {
+      try (Stream<Path> paths = Files.walk(root)) {
+        for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
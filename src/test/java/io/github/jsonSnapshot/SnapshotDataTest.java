@@ -2,6 +2,11 @@ package io.github.jsonSnapshot;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.jupiter.api.Test;
 
 class SnapshotDataTest {
@@ -48,6 +53,113 @@ class SnapshotDataTest {
     performTest(rawDataString, expectedName, expectedData);
   }
 
+  @Test
+  void SnapshotDataItem_dataEqualsIgnoringLineBreaks() {
+    final SnapshotDataItem item = new SnapshotDataItem("anyName", "[\r\n  \"a\",\r  \"b\"\n]");
+
+    assertThat(item.dataEqualsIgnoringLineBreaks("[\n  \"a\",\n  \"b\"\n]")).isTrue();
+    assertThat(item.dataEqualsIgnoringLineBreaks(" [\r\n  \"a\",\u2028  \"b\"\r]\n")).isTrue();
+    assertThat(item.dataEqualsIgnoringLineBreaks("[\n\n  \"a\",\n  \"b\"\n]")).isFalse();
+    assertThat(item.dataEqualsIgnoringLineBreaks("[\n  \"a\",\n  \"b\"\n")).isFalse();
+  }
+
+  @Test
+  void SnapshotDataItem_dataEqualsIgnoringLineBreaksWithMultiByteCharacters() {
+    final String data = "[\n  \"\u00e4\u20ac\ud83d\ude00\"\n]";
+    final SnapshotDataItem item = new SnapshotDataItem("anyName", data);
+
+    assertThat(item.getData()).isEqualTo(data);
+    assertThat(item.dataEqualsIgnoringLineBreaks(data)).isTrue();
+    assertThat(item.dataEqualsIgnoringLineBreaks("[\r\n  \"\u00e4\u20ac\ud83d\ude01\"\r\n]"))
+        .isFalse();
+  }
+
+  @Test
+  void SnapshotDataItem_dataEqualsIgnoringLineBreaksWithMalformedUtf8() {
+    final SnapshotDataItem truncated =
+        SnapshotDataItem.ofUtf8Data("anyName", new byte[] {'[', '"', (byte) 0xE2, (byte) 0x82});
+    final SnapshotDataItem malformed =
+        SnapshotDataItem.ofUtf8Data("anyName", new byte[] {'[', (byte) 0xC3, '"', ']'});
+
+    assertThat(truncated.dataEqualsIgnoringLineBreaks("[\"\u20ac")).isFalse();
+    assertThat(truncated.dataEqualsIgnoringLineBreaks(truncated.getData())).isTrue();
+    assertThat(malformed.dataEqualsIgnoringLineBreaks("[\u00e4]")).isFalse();
+  }
+
+  @Test
+  void SnapshotData_getItemsInFullNameOrder() {
+    final SnapshotData snapshotData = new SnapshotData();
+    snapshotData.add(new SnapshotDataItem("a.Foo.test", "[1]"));
+    snapshotData.add(new SnapshotDataItem("a.Foo$Bar.test", "[2]"));
+    snapshotData.add(new SnapshotDataItem("a.Foo.another", "[3]"));
+    snapshotData.add(new SnapshotDataItem("a.FooTest.test", "[4]"));
+
+    assertThat(snapshotData.getItems())
+        .extracting(SnapshotDataItem::getName)
+        .containsExactly("a.Foo$Bar.test", "a.Foo.another", "a.Foo.test", "a.FooTest.test")
+        .isSorted();
+    assertThat(snapshotData.getItems()).isSorted();
+  }
+
+  @Test
+  void SnapshotData_getItemsGroupedByMethodAndKey() {
+    final SnapshotData snapshotData = new SnapshotData();
+    snapshotData.add(new SnapshotDataItem("a.Foo.test[10]", "[1]"));
+    snapshotData.add(new SnapshotDataItem("a.Foo.testOther", "[2]"));
+    snapshotData.add(new SnapshotDataItem("a.Foo.test[2]", "[3]"));
+    snapshotData.add(new SnapshotDataItem("a.Foo.test", "[4]"));
+    snapshotData.add(new SnapshotDataItem("a.Foo.testZ", "[5]"));
+    snapshotData.add(new SnapshotDataItem("a.Foo.test[b]", "[6]"));
+
+    assertThat(snapshotData.getItems())
+        .extracting(SnapshotDataItem::getName)
+        .containsExactly(
+            "a.Foo.test",
+            "a.Foo.test[2]",
+            "a.Foo.test[10]",
+            "a.Foo.test[b]",
+            "a.Foo.testOther",
+            "a.Foo.testZ");
+    assertThat(snapshotData.getItems()).isSorted();
+    assertThat(snapshotData.getItemByName("a.Foo.test[10]").get().getData()).isEqualTo("[1]");
+  }
+
+  @Test
+  void SnapshotData_getItemsWithMixedKeysInTotalOrder() {
+    final List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      keys.add(Integer.toString(i));
+      keys.add(i + "a");
+    }
+    Collections.shuffle(keys, new Random(42));
+    final SnapshotData snapshotData = new SnapshotData();
+    keys.forEach(key -> snapshotData.add(new SnapshotDataItem("a.Foo.test[" + key + "]", "[1]")));
+
+    final List<SnapshotDataItem> items = snapshotData.getItems();
+
+    assertThat(items).hasSize(10000).isSorted();
+    assertThat(items.get(0).getName()).isEqualTo("a.Foo.test[0]");
+    assertThat(items.get(9).getName()).isEqualTo("a.Foo.test[9]");
+    assertThat(items.get(10).getName()).isEqualTo("a.Foo.test[10]");
+    assertThat(items.get(5000).getName()).isEqualTo("a.Foo.test[0a]");
+    assertThat(SnapshotData.compareSuffixes("test[9]", "test[10]")).isNegative();
+    assertThat(SnapshotData.compareSuffixes("test[10]", "test[1a]")).isNegative();
+    assertThat(SnapshotData.compareSuffixes("test[9]", "test[1a]")).isNegative();
+  }
+
+  @Test
+  void SnapshotData_getItemByClassAndMethod() {
+    final SnapshotData snapshotData = new SnapshotData();
+    snapshotData.add(new SnapshotDataItem("a.Foo.test", "[1]"));
+    snapshotData.add(new SnapshotDataItem("a.Foo.test", "[2]"));
+
+    assertThat(snapshotData.getItem("a.Foo", "test").get().getData()).isEqualTo("[2]");
+    assertThat(snapshotData.getItemByName("a.Foo.test").get().getData()).isEqualTo("[2]");
+    assertThat(snapshotData.getItem("a.Foo", "another")).isEmpty();
+    assertThat(snapshotData.getItem("a.Bar", "test")).isEmpty();
+    assertThat(snapshotData.getItems()).hasSize(1);
+  }
+
   private void performTest(
       final String rawDataString, final String expectedName, final String expectedData) {
 
@@ -0,0 +1,97 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotDeltaTest {
+
+  private final Function<Object, String> jsonFunction = SnapshotMatcher.defaultJsonFunction();
+
+  @Test
+  void shouldStoreDeltaAndRebuildItOnLookup() throws IOException {
+    SnapshotDataItem base = new SnapshotDataItem("a.base", jsonFunction.apply(scenario(1, "x")));
+    SnapshotDataItem variant =
+        new SnapshotDataItem("a.variant", jsonFunction.apply(scenario(2, "y")));
+
+    Path dir = Files.createTempDirectory("snapshotDeltaTest");
+    Path file = dir.resolve("delta.snap");
+    try {
+      SnapshotFile snapshotFile = new SnapshotFile(dir.toString() + "/", "delta.snap");
+      snapshotFile.pushAll(Arrays.asList(base, SnapshotDelta.encode(variant, base)));
+
+      String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      assertThat(content).contains("@record a.variant ").contains("\n@delta:a.base [");
+      assertThat(content.length()).isLessThan(base.getDataSize() + variant.getDataSize());
+
+      SnapshotData reloaded =
+          new SnapshotFile(dir.toString() + "/", "delta.snap").getStoredSnapshots();
+      assertThat(reloaded.getItemByName("a.variant").get().getData()).isEqualTo(variant.getData());
+    } finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(dir.resolve(FileSystemSnapshotStore.LOCK_FILE_NAME));
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  void shouldKeepDeltasWhenBaseIsReplaced() {
+    SnapshotDataItem base = new SnapshotDataItem("a.base", jsonFunction.apply(scenario(1, "x")));
+    SnapshotDataItem variant =
+        new SnapshotDataItem("a.variant", jsonFunction.apply(scenario(2, "y")));
+    SnapshotData data = new SnapshotData();
+    data.add(base);
+    data.add(SnapshotDelta.encode(variant, base));
+
+    data.add(new SnapshotDataItem("a.base", jsonFunction.apply(scenario(3, "z"))));
+
+    assertThat(data.getItemByName("a.variant").get().getData()).isEqualTo(variant.getData());
+    assertThat(data.getRawItem("a.variant").get().getDeltaBase()).isNull();
+  }
+
+  @Test
+  void shouldKeepDeltasWhenBaseIsRemoved() {
+    SnapshotDataItem base = new SnapshotDataItem("a.base", jsonFunction.apply(scenario(1, "x")));
+    SnapshotDataItem variant =
+        new SnapshotDataItem("a.variant", jsonFunction.apply(scenario(2, "y")));
+    SnapshotData data = new SnapshotData();
+    data.add(base);
+    data.add(SnapshotDelta.encode(variant, base));
+    SnapshotData copy = data.copy();
+
+    data.remove("a.base");
+    copy.add(variant);
+    copy.remove("a.base");
+
+    assertThat(data.getItemByName("a.variant").get().getData()).isEqualTo(variant.getData());
+    assertThat(copy.getItemByName("a.variant").get()).isSameAs(variant);
+  }
+
+  @Test
+  void shouldStoreFullSnapshotWhenDeltaDoesNotPayOff() {
+    SnapshotDataItem base = new SnapshotDataItem("a.base", "[\n  1\n]");
+    SnapshotDataItem other = new SnapshotDataItem("a.other", "[\n  \"completely different\"\n]");
+
+    assertThat(SnapshotDelta.encode(other, base)).isSameAs(other);
+  }
+
+  private static Object[] scenario(int id, String flag) {
+    Map<String, Object> scenario = new TreeMap<>();
+    scenario.put("id", id);
+    scenario.put("flag", flag);
+    for (int i = 0; i < 20; i++) {
+      scenario.put("field" + i, Collections.singletonMap("value", "constant value " + i));
+    }
+    return new Object[] {scenario};
+  }
+}
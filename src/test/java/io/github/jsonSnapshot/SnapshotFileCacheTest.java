@@ -0,0 +1,42 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotFileCacheTest {
+
+  @Test
+  void shouldKeepDataUntilFileChangesOnDisk() throws IOException {
+    Path dir = Files.createTempDirectory("snapshotFileCacheTest");
+    Path file = dir.resolve("cached.snap");
+    Files.write(file, "a.first=[1]".getBytes(StandardCharsets.UTF_8));
+
+    try (SnapshotFileCache cache =
+        new SnapshotFileCache(FileSystems.getDefault().newWatchService())) {
+      SnapshotData data = new SnapshotData();
+      data.add(new SnapshotDataItem("a.first", "[1]"));
+      cache.put(file, data, Files.readAttributes(file, BasicFileAttributes.class));
+
+      SnapshotData cached = cache.get(file).get();
+      assertThat(cached.getItemByName("a.first").get().getData()).isEqualTo("[1]");
+      cached.add(new SnapshotDataItem("a.second", "[2]"));
+      assertThat(cache.get(file).get().getItems()).hasSize(1);
+
+      // detected without waiting for the watch event
+      Files.write(file, "a.first=[changed]".getBytes(StandardCharsets.UTF_8));
+      assertThat(cache.get(file)).isEmpty();
+    } finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(dir.resolve(FileSystemSnapshotStore.LOCK_FILE_NAME));
+      Files.delete(dir);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotFileFormatTest {
+
+  @Test
+  void records_areFoundFromHeadersAndKeepBlankLinesInPayloads() {
+    byte[] content =
+        SnapshotFiles.content("a.first", "[\n\n\n\n  1\n]", "a.second", "[2]")
+            .getBytes(StandardCharsets.UTF_8);
+
+    List<SnapshotFileFormat.Record> records = SnapshotFileFormat.records(content);
+
+    assertThat(records).extracting("name").containsExactly("a.first", "a.second");
+    byte[] first = records.get(0).value(content);
+    assertThat(new String(first, StandardCharsets.UTF_8)).isEqualTo("[\n\n\n\n  1\n]");
+    assertThat(records.get(0).isFramed()).isTrue();
+  }
+
+  @Test
+  void records_endBeforeNextHeaderWhenEditedByHand() {
+    byte[] content =
+        SnapshotFiles.content("a.first", "[1]", "a.second", "[2]")
+            .replace("[1]", "[\r\n  10\r\n]")
+            .getBytes(StandardCharsets.UTF_8);
+
+    List<SnapshotFileFormat.Record> records = SnapshotFileFormat.records(content);
+
+    byte[] first = records.get(0).value(content);
+    assertThat(new String(first, StandardCharsets.UTF_8)).isEqualTo("[\r\n  10\r\n]");
+    assertThat(records.get(0).isFramed()).isFalse();
+    assertThat(records.get(1).isFramed()).isTrue();
+  }
+
+  @Test
+  void records_ignoreHashOfEarlierHeaders() {
+    String hash = SnapshotPayloads.hash("[1]".getBytes(StandardCharsets.UTF_8));
+    byte[] content =
+        (SnapshotFileFormat.HEADER + "\n@record a.first 3 " + hash + "\n[1]\n")
+            .getBytes(StandardCharsets.UTF_8);
+
+    List<SnapshotFileFormat.Record> records = SnapshotFileFormat.records(content);
+
+    assertThat(records).extracting("name").containsExactly("a.first");
+    assertThat(new String(records.get(0).value(content), StandardCharsets.UTF_8)).isEqualTo("[1]");
+    assertThat(records.get(0).isFramed()).isTrue();
+  }
+
+  @Test
+  void snapshotFile_readsOriginalFormatAndUpgradesItOnWrite() throws IOException {
+    Path dir = Files.createTempDirectory("snapshotFileFormatTest");
+    Path file = dir.resolve("upgrade.snap");
+    Files.write(file, "a.first=[\n  1\n]\n\n\na.second=[2]".getBytes(StandardCharsets.UTF_8));
+    try {
+      SnapshotFile snapshotFile = new SnapshotFile(dir.toString() + "/", "upgrade.snap");
+      assertThat(snapshotFile.getStoredSnapshots().getItems()).hasSize(2);
+
+      snapshotFile.push(new SnapshotDataItem("a.third", "[3]"));
+
+      assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+          .isEqualTo(
+              SnapshotFiles.content("a.first", "[\n  1\n]", "a.second", "[2]", "a.third", "[3]"));
+      assertThat(
+              new SnapshotFile(dir.toString() + "/", "upgrade.snap")
+                  .getStoredSnapshots()
+                  .getItemByName("a.first")
+                  .get()
+                  .getData())
+          .isEqualTo("[\n  1\n]");
+    } finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(dir.resolve(FileSystemSnapshotStore.LOCK_FILE_NAME));
+      Files.delete(dir);
+    }
+  }
+}
@@ -1,6 +1,18 @@
 package io.github.jsonSnapshot;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 
@@ -50,4 +62,145 @@ class SnapshotFileTest {
     assertThat(result[0]).isEqualTo("blahblahblah_1");
     assertThat(result[1]).isEqualTo("blahblahblah_2");
   }
+
+  @Test
+  void push_keepsEntriesWrittenByOtherInstances() throws IOException {
+    Path dir = Files.createTempDirectory("snapshotFileTest");
+    Path file = dir.resolve("shared.snap");
+    try {
+      SnapshotFile first = new SnapshotFile(dir.toString() + "/", "shared.snap");
+      SnapshotFile second = new SnapshotFile(dir.toString() + "/", "shared.snap");
+
+      first.push(new SnapshotDataItem("a.first", "[1]"));
+      second.push(new SnapshotDataItem("a.second", "[2]"));
+      first.push(new SnapshotDataItem("a.third", "[3]"));
+
+      String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      assertThat(content)
+          .isEqualTo(SnapshotFiles.content("a.first", "[1]", "a.second", "[2]", "a.third", "[3]"));
+      assertThat(first.getStoredSnapshots().getItems()).hasSize(3);
+    } finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(dir.resolve(FileSystemSnapshotStore.LOCK_FILE_NAME));
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  void push_storesIdenticalPayloadsOnceWhenDeduplicating() throws IOException {
+    Path dir = Files.createTempDirectory("snapshotFileTest");
+    Path file = dir.resolve("dedup.snap");
+    Path blobs = dir.resolve(SnapshotPayloads.BLOB_DIRECTORY);
+    try {
+      SnapshotFile snapshotFile =
+          new SnapshotFile(
+              new FileSystemSnapshotStore(dir.toString() + "/"),
+              "dedup.snap",
+              SnapshotFileOptions.DEFAULT.withDeduplicate(true));
+      snapshotFile.pushAll(
+          Arrays.asList(
+              new SnapshotDataItem("a.first", "[\"same\"]"),
+              new SnapshotDataItem("a.second", "[\"same\"]"),
+              new SnapshotDataItem("a.third", "[\"other\"]")));
+
+      String hash = SnapshotPayloads.hash("[\"same\"]".getBytes(StandardCharsets.UTF_8));
+      String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      String reference = SnapshotPayloads.REFERENCE_PREFIX + hash;
+      assertThat(content)
+          .startsWith(SnapshotFiles.content("a.first", reference, "a.second", reference));
+      try (Stream<Path> stored = Files.list(blobs)) {
+        assertThat(stored.filter(blob -> blob.toString().endsWith(".json")).count()).isEqualTo(2);
+      }
+
+      SnapshotFile reloaded = new SnapshotFile(dir.toString() + "/", "dedup.snap");
+      SnapshotDataItem first = reloaded.getStoredSnapshots().getItemByName("a.first").get();
+      SnapshotDataItem second = reloaded.getStoredSnapshots().getItemByName("a.second").get();
+      assertThat(first.getData()).isEqualTo("[\"same\"]");
+      assertThat(first.getUtf8Data()).isSameAs(second.getUtf8Data());
+    } finally {
+      try (Stream<Path> stored = Files.list(blobs)) {
+        for (Path blob : (Iterable<Path>) stored::iterator) {
+          Files.delete(blob);
+        }
+      }
+      Files.delete(blobs);
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(dir.resolve(FileSystemSnapshotStore.LOCK_FILE_NAME));
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  void push_writesOnlyNewPayloadsWhenDeduplicating() throws IOException {
+    List<String> checkedBlobs = new ArrayList<>();
+    InMemorySnapshotStore store =
+        new InMemorySnapshotStore() {
+          @Override
+          public boolean contains(String fileName) {
+            checkedBlobs.add(fileName);
+            return super.contains(fileName);
+          }
+        };
+    SnapshotFile snapshotFile =
+        new SnapshotFile(store, "dedup.snap", SnapshotFileOptions.DEFAULT.withDeduplicate(true));
+    snapshotFile.push(new SnapshotDataItem("a.first", "[1]"));
+    snapshotFile.push(new SnapshotDataItem("a.second", "[2]"));
+
+    new SnapshotFile(store, "dedup.snap", SnapshotFileOptions.DEFAULT.withDeduplicate(true))
+        .push(new SnapshotDataItem("a.third", "[3]"));
+
+    assertThat(checkedBlobs).hasSize(3).doesNotHaveDuplicates();
+  }
+
+  @Test
+  void push_failsWithoutWritingInReadOnlyMode() throws IOException {
+    Path dir = Files.createTempDirectory("snapshotFileTest");
+    Path file = dir.resolve("present.snap");
+    Files.write(file, "a.first=[1]".getBytes(StandardCharsets.UTF_8));
+    FileSystemSnapshotStore store = new FileSystemSnapshotStore(dir.toString() + "/");
+    try {
+      SnapshotFile missing =
+          new SnapshotFile(
+              store, "missing/missing.snap", SnapshotFileOptions.DEFAULT.withReadOnly(true));
+      assertThatThrownBy(() -> missing.push(new SnapshotDataItem("a.first", "[1]")))
+          .isInstanceOf(SnapshotMatchException.class)
+          .hasMessageContaining("missing.snap does not exist");
+      missing.flush();
+      assertThat(dir.resolve("missing")).doesNotExist();
+
+      SnapshotFile present =
+          new SnapshotFile(store, "present.snap", SnapshotFileOptions.DEFAULT.withReadOnly(true));
+      assertThat(present.getStoredSnapshots().getItemByName("a.first")).isPresent();
+      assertThatThrownBy(() -> present.push(new SnapshotDataItem("a.second", "[2]")))
+          .isInstanceOf(SnapshotMatchException.class)
+          .hasMessageContaining("has no snapshot a.second");
+      assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+          .isEqualTo("a.first=[1]");
+    } finally {
+      Files.delete(file);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  void getStoredSnapshots_loadsReadOnlyFileOnceForConcurrentCallers() throws IOException {
+    InMemorySnapshotStore store = new InMemorySnapshotStore();
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      content.append("a.snapshot").append(i).append("=[").append(i).append("]\n\n\n");
+    }
+    byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+    store.put("concurrent.snap", current -> bytes);
+    SnapshotFile snapshotFile =
+        new SnapshotFile(store, "concurrent.snap", SnapshotFileOptions.DEFAULT.withReadOnly(true));
+
+    List<SnapshotData> loaded =
+        IntStream.range(0, 16)
+            .parallel()
+            .mapToObj(i -> snapshotFile.getStoredSnapshots())
+            .collect(Collectors.toList());
+
+    assertThat(loaded).allSatisfy(data -> assertThat(data).isSameAs(loaded.get(0)));
+    assertThat(loaded.get(0).getItems()).hasSize(1000);
+  }
 }
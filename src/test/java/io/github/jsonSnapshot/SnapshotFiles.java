@@ -0,0 +1,26 @@
+package io.github.jsonSnapshot;
+
+import java.nio.charset.StandardCharsets;
+
+/** Builds the expected content of snapshot files in the current format. */
+final class SnapshotFiles {
+
+  private SnapshotFiles() {}
+
+  /** A file with the given records, alternating names and stored values. */
+  static String content(String... namesAndValues) {
+    StringBuilder content = new StringBuilder(SnapshotFileFormat.HEADER).append('\n');
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      byte[] value = namesAndValues[i + 1].getBytes(StandardCharsets.UTF_8);
+      content
+          .append("@record ")
+          .append(namesAndValues[i])
+          .append(' ')
+          .append(value.length)
+          .append('\n')
+          .append(namesAndValues[i + 1])
+          .append('\n');
+    }
+    return content.toString();
+  }
+}
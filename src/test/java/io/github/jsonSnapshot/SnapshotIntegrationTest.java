@@ -1,10 +1,14 @@
 package io.github.jsonSnapshot;
 
 import static io.github.jsonSnapshot.SnapshotMatcher.expect;
+import static io.github.jsonSnapshot.SnapshotMatcher.expectAll;
 import static io.github.jsonSnapshot.SnapshotMatcher.start;
 import static io.github.jsonSnapshot.SnapshotMatcher.validateSnapshots;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -54,6 +58,16 @@ public class SnapshotIntegrationTest {
         .toMatchSnapshot();
   }
 
+  @Test
+  void shouldMatchAllNamedSnapshots() {
+    Map<String, FakeObject> objects = new LinkedHashMap<>();
+    for (int i = 1; i <= 3; i++) {
+      objects.put(
+          "object" + i, FakeObject.builder().id("anyId" + i).value(i).name("anyName" + i).build());
+    }
+    expectAll(objects).toMatchSnapshot();
+  }
+
   @Test
   void shouldMatchSnapshotInsidePrivateMethod() {
     matchInsidePrivate();
@@ -0,0 +1,54 @@
+package io.github.jsonSnapshot;
+
+import static io.github.jsonSnapshot.SnapshotMatcher.expect;
+import static io.github.jsonSnapshot.SnapshotMatcher.expectWithKey;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(SnapshotExtension.class)
+class SnapshotInvocationTest {
+
+  @BeforeAll
+  static void beforeAll() {
+    SnapshotMatcher.start();
+  }
+
+  @AfterAll
+  static void afterAll() {
+    SnapshotMatcher.validateSnapshots();
+  }
+
+  @RepeatedTest(3)
+  void shouldMatchSnapshotPerInvocation(RepetitionInfo repetitionInfo) {
+    expect(
+            FakeObject.builder()
+                .id("id" + repetitionInfo.getCurrentRepetition())
+                .value(1)
+                .name("repeated")
+                .build())
+        .toMatchSnapshot();
+  }
+
+  @TestFactory
+  Stream<DynamicTest> shouldMatchSnapshotPerDynamicTest() {
+    return IntStream.rangeClosed(1, 2)
+        .mapToObj(
+            i ->
+                DynamicTest.dynamicTest(
+                    "case " + i,
+                    () ->
+                        expectWithKey(
+                                "case" + i,
+                                FakeObject.builder().id("id" + i).value(i).name("dynamic").build())
+                            .toMatchSnapshot()));
+  }
+}
@@ -0,0 +1,117 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotMaskingRuleTest {
+
+  @Test
+  void shouldMaskPropertyAtAnyDepth() {
+    FakeObject inner = FakeObject.builder().id("innerId").value(2).name("inner").build();
+    FakeObject outer = FakeObject.builder().id("outerId").value(1).name("outer").build();
+    outer.setFakeObject(inner);
+
+    String json = serialize(outer, SnapshotMaskingRule.property("id", "<id>"));
+
+    assertThat(json)
+        .isEqualTo(
+            "[\n"
+                + "  {\n"
+                + "    \"id\": \"<id>\",\n"
+                + "    \"value\": 1,\n"
+                + "    \"name\": \"outer\",\n"
+                + "    \"fakeObject\": {\n"
+                + "      \"id\": \"<id>\",\n"
+                + "      \"value\": 2,\n"
+                + "      \"name\": \"inner\"\n"
+                + "    }\n"
+                + "  }\n"
+                + "]");
+  }
+
+  @Test
+  void shouldMaskStructuredValueByPointer() {
+    FakeObject inner = FakeObject.builder().id("innerId").value(2).name("inner").build();
+    FakeObject outer = FakeObject.builder().id("outerId").value(1).name("outer").build();
+    outer.setFakeObject(inner);
+
+    String json = serialize(outer, SnapshotMaskingRule.pointer("/*/fakeObject", null));
+
+    assertThat(json)
+        .isEqualTo(
+            "[\n"
+                + "  {\n"
+                + "    \"id\": \"outerId\",\n"
+                + "    \"value\": 1,\n"
+                + "    \"name\": \"outer\",\n"
+                + "    \"fakeObject\": null\n"
+                + "  }\n"
+                + "]");
+  }
+
+  @Test
+  void shouldOnlyMaskMatchingPointer() {
+    FakeObject inner = FakeObject.builder().id("innerId").value(2).name("inner").build();
+    FakeObject outer = FakeObject.builder().id("outerId").value(1).name("outer").build();
+    outer.setFakeObject(inner);
+
+    String json = serialize(outer, SnapshotMaskingRule.pointer("/0/fakeObject/value", 0));
+
+    assertThat(json).contains("\"value\": 1,").contains("\"value\": 0,");
+  }
+
+  @Test
+  void shouldKeepEmptyContainersAndPrimitiveArraysAroundMaskedValues() {
+    Map<String, Object> masked = new HashMap<>();
+    masked.put("empty", Collections.emptyMap());
+    masked.put("id", "secret");
+    masked.put("list", Collections.emptyList());
+    masked.put("numbers", new int[] {1, 2});
+    masked.put("onlyId", Collections.singletonMap("id", "secret"));
+
+    String json = serialize(masked, SnapshotMaskingRule.property("id", "<id>"));
+
+    assertThat(json)
+        .isEqualTo(
+            "[\n"
+                + "  {\n"
+                + "    \"empty\": { },\n"
+                + "    \"id\": \"<id>\",\n"
+                + "    \"list\": [ ],\n"
+                + "    \"numbers\": [\n"
+                + "      1,\n"
+                + "      2\n"
+                + "    ],\n"
+                + "    \"onlyId\": {\n"
+                + "      \"id\": \"<id>\"\n"
+                + "    }\n"
+                + "  }\n"
+                + "]");
+  }
+
+  @Test
+  void shouldRejectInvalidPointer() {
+    assertThrows(IllegalArgumentException.class, () -> SnapshotMaskingRule.pointer("id", "x"));
+  }
+
+  private String serialize(Object object, SnapshotMaskingRule rule) {
+    Function<Object, String> jsonFunction =
+        SnapshotMatcher.defaultJsonFunction(
+            new SnapshotConfig() {
+              @Override
+              public List<SnapshotMaskingRule> getSnapshotMaskingRules() {
+                return Arrays.asList(rule);
+              }
+            });
+    return jsonFunction.apply(new Object[] {object});
+  }
+}
@@ -1,15 +1,17 @@
 package io.github.jsonSnapshot;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
-import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -23,42 +25,39 @@ class SnapshotMatcherTest {
   @BeforeAll
   static void beforeAll() {
     SnapshotMatcher.start();
+    assertThat(new File(FILE_PATH)).doesNotExist();
   }
 
   @AfterAll
   static void afterAll() throws IOException {
     SnapshotMatcher.validateSnapshots();
     File f = new File(FILE_PATH);
-    assertThat(StringUtils.join(Files.readAllLines(f.toPath()), "\n"))
+    assertThat(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8))
         .isEqualTo(
-            "io.github.jsonSnapshot.SnapshotMatcherTest.should1ShowSnapshotSuccessfully=[\n"
-                + "  \"any type of object\"\n"
-                + "]\n\n\n"
-                + "io.github.jsonSnapshot.SnapshotMatcherTest.should2SecondSnapshotExecutionSuccessfully=[\n"
-                + "  \"any second type of object\",\n"
-                + "  \"any third type of object\"\n"
-                + "]");
+            SnapshotFiles.content(
+                "io.github.jsonSnapshot.SnapshotMatcherTest.should1ShowSnapshotSuccessfully",
+                "[\n" + "  \"any type of object\"\n" + "]",
+                "io.github.jsonSnapshot.SnapshotMatcherTest.should2SecondSnapshotExecutionSuccessfully",
+                "[\n"
+                    + "  \"any second type of object\",\n"
+                    + "  \"any third type of object\"\n"
+                    + "]"));
     Files.delete(Paths.get(FILE_PATH));
   }
 
   @Test
-  void should1ShowSnapshotSuccessfully() throws IOException {
-
-    File f = new File(FILE_PATH);
-    if (!f.exists() || f.isDirectory()) {
-      throw new RuntimeException("File should exist here");
-    }
+  void should1ShowSnapshotSuccessfully() {
     SnapshotMatcher.expect("any type of object").toMatchSnapshot();
   }
 
   @Test
-  void should2SecondSnapshotExecutionSuccessfully() throws IOException {
-
-    File f = new File(FILE_PATH);
-    if (!f.exists() || f.isDirectory()) {
-      throw new RuntimeException("File should exist here");
-    }
+  void should2SecondSnapshotExecutionSuccessfully() {
     SnapshotMatcher.expect("any second type of object", "any third type of object")
         .toMatchSnapshot();
   }
+
+  @RepeatedTest(2)
+  void shouldRefuseUnkeyedSnapshotsOfTestTemplatesWithoutExtension() {
+    assertThrows(SnapshotMatchException.class, () -> SnapshotMatcher.expect("any object"));
+  }
 }
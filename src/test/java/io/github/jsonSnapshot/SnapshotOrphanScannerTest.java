@@ -0,0 +1,195 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotOrphanScannerTest {
+
+  private static final String PREFIX = "io.github.jsonSnapshot.SnapshotOrphanScannerTest.";
+
+  @Test
+  void shouldFindAndDeleteOrphanFilesAndEntries() throws IOException {
+    Path root = Files.createTempDirectory("snapshotOrphanScannerTest");
+    Path packageDir = Files.createDirectories(root.resolve("io/github/jsonSnapshot"));
+    Path orphanFile = packageDir.resolve("DoesNotExistTest.snap");
+    Path file = packageDir.resolve("SnapshotOrphanScannerTest.snap");
+    write(orphanFile, "io.github.jsonSnapshot.DoesNotExistTest.anyTest=[1]");
+    write(
+        file,
+        PREFIX
+            + "removedTest=[2]\n\n\n"
+            + PREFIX
+            + "shouldFindAndDeleteOrphanFilesAndEntries=[3]\n\n\n"
+            + PREFIX
+            + "shouldFindAndDeleteOrphanFilesAndEntries[key]=[4]");
+    SnapshotConfig config = config(root);
+
+    try {
+      SnapshotOrphanReport report = new SnapshotOrphanScanner(config).scan();
+      assertThat(report.getScannedFiles()).isEqualTo(2);
+      assertThat(report.getOrphanFiles())
+          .containsExactly("io/github/jsonSnapshot/DoesNotExistTest.snap");
+      assertThat(report.getOrphanEntries())
+          .containsOnlyKeys("io/github/jsonSnapshot/SnapshotOrphanScannerTest.snap");
+      assertThat(report.getOrphanEntries().values().iterator().next())
+          .containsExactly(PREFIX + "removedTest");
+      assertThat(orphanFile).exists();
+
+      assertThat(new SnapshotOrphanScanner(config).deleteOrphans().hasOrphans()).isTrue();
+      assertThat(orphanFile).doesNotExist();
+      assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+          .isEqualTo(
+              SnapshotFiles.content(
+                  PREFIX + "shouldFindAndDeleteOrphanFilesAndEntries",
+                  "[3]",
+                  PREFIX + "shouldFindAndDeleteOrphanFilesAndEntries[key]",
+                  "[4]"));
+      assertThat(new SnapshotOrphanScanner(config).scan().hasOrphans()).isFalse();
+    } finally {
+      deleteTree(root);
+    }
+  }
+
+  @Test
+  void shouldDeleteOrphanBlobs() throws IOException {
+    Path root = Files.createTempDirectory("snapshotOrphanScannerTest");
+    Path blobs = Files.createDirectories(root.resolve(SnapshotPayloads.BLOB_DIRECTORY));
+    String used = SnapshotPayloads.hash(new byte[] {1});
+    String unused = SnapshotPayloads.hash(new byte[] {2});
+    String ofRemovedTest = SnapshotPayloads.hash(new byte[] {3});
+    for (String hash : new String[] {used, unused, ofRemovedTest}) {
+      write(blobs.resolve(hash + ".json"), "[]");
+    }
+    write(
+        Files.createDirectories(root.resolve("io/github/jsonSnapshot"))
+            .resolve("SnapshotOrphanScannerTest.snap"),
+        SnapshotFiles.content(
+            PREFIX + "removedTest",
+            SnapshotPayloads.REFERENCE_PREFIX + ofRemovedTest,
+            PREFIX + "shouldDeleteOrphanBlobs",
+            SnapshotPayloads.REFERENCE_PREFIX + used));
+
+    try {
+      SnapshotOrphanReport report = new SnapshotOrphanScanner(config(root)).deleteOrphans();
+
+      assertThat(report.getOrphanBlobs())
+          .containsExactlyInAnyOrder(
+              SnapshotPayloads.BLOB_DIRECTORY + "/" + unused + ".json",
+              SnapshotPayloads.BLOB_DIRECTORY + "/" + ofRemovedTest + ".json");
+      assertThat(blobs.resolve(used + ".json")).exists();
+      assertThat(blobs.resolve(unused + ".json")).doesNotExist();
+      assertThat(blobs.resolve(ofRemovedTest + ".json")).doesNotExist();
+    } finally {
+      deleteTree(root);
+    }
+  }
+
+  @Test
+  void shouldKeepRemainingEntriesOfDeduplicatedFilesAsReferences() throws IOException {
+    Path root = Files.createTempDirectory("snapshotOrphanScannerTest");
+    Path blobs = Files.createDirectories(root.resolve(SnapshotPayloads.BLOB_DIRECTORY));
+    String used = SnapshotPayloads.hash("[1]".getBytes(StandardCharsets.UTF_8));
+    String ofRemovedTest = SnapshotPayloads.hash("[2]".getBytes(StandardCharsets.UTF_8));
+    write(blobs.resolve(used + ".json"), "[1]");
+    write(blobs.resolve(ofRemovedTest + ".json"), "[2]");
+    Path file =
+        Files.createDirectories(root.resolve("io/github/jsonSnapshot"))
+            .resolve("SnapshotOrphanScannerTest.snap");
+    write(
+        file,
+        SnapshotFiles.content(
+            PREFIX + "removedTest",
+            SnapshotPayloads.REFERENCE_PREFIX + ofRemovedTest,
+            PREFIX + "shouldKeepRemainingEntriesOfDeduplicatedFilesAsReferences",
+            SnapshotPayloads.REFERENCE_PREFIX + used));
+    SnapshotConfig config =
+        new SnapshotConfig() {
+          @Override
+          public String getFilePath() {
+            return root.toString() + "/";
+          }
+
+          @Override
+          public boolean isDeduplicateSnapshots() {
+            return true;
+          }
+        };
+
+    try {
+      new SnapshotOrphanScanner(config).deleteOrphans();
+
+      assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+          .isEqualTo(
+              SnapshotFiles.content(
+                  PREFIX + "shouldKeepRemainingEntriesOfDeduplicatedFilesAsReferences",
+                  SnapshotPayloads.REFERENCE_PREFIX + used));
+      assertThat(blobs.resolve(used + ".json")).exists();
+      assertThat(blobs.resolve(ofRemovedTest + ".json")).doesNotExist();
+    } finally {
+      deleteTree(root);
+    }
+  }
+
+  @Test
+  void shouldRefuseToDeleteWhenNoTestClassResolves() throws IOException {
+    Path root = Files.createTempDirectory("snapshotOrphanScannerTest");
+    Path file =
+        Files.createDirectories(root.resolve("io/github/jsonSnapshot"))
+            .resolve("SnapshotOrphanScannerTest.snap");
+    write(file, PREFIX + "anyTest=[1]");
+
+    try {
+      SnapshotOrphanScanner withoutTestClasses =
+          new SnapshotOrphanScanner(config(root), new ClassLoader(null) {});
+
+      assertThat(withoutTestClasses.scan().getOrphanFiles()).hasSize(1);
+      assertThrows(SnapshotMatchException.class, withoutTestClasses::deleteOrphans);
+      assertThat(file).exists();
+    } finally {
+      deleteTree(root);
+    }
+  }
+
+  @Test
+  void shouldRefuseStoresThatAreNotFileSystems() {
+    SnapshotConfig inMemory =
+        new SnapshotConfig() {
+          @Override
+          public SnapshotStore getSnapshotStore() {
+            return new InMemorySnapshotStore();
+          }
+        };
+
+    assertThrows(SnapshotMatchException.class, () -> new SnapshotOrphanScanner(inMemory));
+  }
+
+  private static SnapshotConfig config(Path root) {
+    return new SnapshotConfig() {
+      @Override
+      public String getFilePath() {
+        return root.toString() + "/";
+      }
+    };
+  }
+
+  private static void deleteTree(Path root) throws IOException {
+    try (Stream<Path> paths = Files.walk(root)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,82 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class SnapshotReportTest {
+
+  @Test
+  void shouldRankSnapshotsAndComputeClassPercentiles() throws IOException {
+    SnapshotReport report = new SnapshotReport();
+    report.recordFileLoad("a/Foo.snap", 100, 5_000);
+    report.recordSnapshot(record("a.Foo", "a.Foo.fast[\"<a & 'b'>\"]", 10, 1, 1));
+    report.recordSnapshot(record("a.Foo", "a.Foo.slow", 5, 300, 200));
+    report.recordSnapshot(record("a.Foo", "a.Foo.big", 5_000, 10, 10));
+    report.recordFileWrite("a/Foo.snap", 5_015, 7_000);
+
+    Path directory = Files.createTempDirectory("snapshotReport");
+    try {
+      report.write(directory);
+
+      JsonNode json =
+          new ObjectMapper().readTree(directory.resolve(SnapshotReport.JSON_FILE_NAME).toFile());
+      assertThat(json.get("slowest").get(0).get("name").asText()).isEqualTo("a.Foo.slow");
+      assertThat(json.get("largest").get(0).get("name").asText()).isEqualTo("a.Foo.big");
+
+      JsonNode classLatency = json.get("classes").get(0);
+      assertThat(classLatency.get("snapshots").asInt()).isEqualTo(3);
+      assertThat(classLatency.get("p50Micros").asLong()).isEqualTo(20);
+      assertThat(classLatency.get("maxMicros").asLong()).isEqualTo(500);
+
+      JsonNode file = json.get("files").get(0);
+      assertThat(file.get("file").asText()).isEqualTo("a/Foo.snap");
+      assertThat(file.get("loadMicros").asLong()).isEqualTo(5);
+      assertThat(file.get("writes").asInt()).isEqualTo(1);
+      assertThat(file.get("entries")).hasSize(3);
+
+      String html =
+          new String(
+              Files.readAllBytes(directory.resolve(SnapshotReport.HTML_FILE_NAME)),
+              StandardCharsets.UTF_8);
+      assertThat(html)
+          .contains("<td>a.Foo.slow</td>")
+          .contains("<td>a/Foo.snap</td>")
+          .contains("<td>a.Foo.fast[&quot;&lt;a &amp; &#39;b&#39;&gt;&quot;]</td>");
+    } finally {
+      Files.deleteIfExists(directory.resolve(SnapshotReport.JSON_FILE_NAME));
+      Files.deleteIfExists(directory.resolve(SnapshotReport.HTML_FILE_NAME));
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  void shouldUseNearestRankPercentile() {
+    long[] values = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    assertThat(SnapshotReport.percentile(values, 50)).isEqualTo(5);
+    assertThat(SnapshotReport.percentile(values, 90)).isEqualTo(9);
+    assertThat(SnapshotReport.percentile(values, 99)).isEqualTo(10);
+    assertThat(SnapshotReport.percentile(new long[] {42}, 50)).isEqualTo(42);
+  }
+
+  private SnapshotReport.SnapshotRecord record(
+      String className, String name, int bytes, long serializationMicros, long matchMicros) {
+    return new SnapshotReport.SnapshotRecord(
+        "a/Foo.snap",
+        className,
+        name,
+        bytes,
+        serializationMicros,
+        matchMicros,
+        "StringEqualsMatchingStrategy",
+        SnapshotReport.Outcome.MATCHED);
+  }
+}
@@ -0,0 +1,126 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class SnapshotSerializerTest {
+
+  static class Base {
+    String baseId = "base";
+  }
+
+  @SnapshotSerializable
+  static class AnnotatedDto extends Base {
+    static String ignoredStatic = "static";
+    String id = "1";
+
+    @JsonProperty("renamed")
+    int count = 2;
+
+    transient String ignoredTransient = "transient";
+    @JsonIgnore String ignored = "ignored";
+    String missing = null;
+    List<String> tags = Arrays.asList("a", "b");
+    FakeObject fakeObject = FakeObject.builder().id("fake").value(3).build();
+  }
+
+  @SnapshotSerializable
+  @JsonPropertyOrder(alphabetic = true)
+  static class OrderedDto {
+    String id = "1";
+  }
+
+  @SnapshotSerializable
+  static class PrivateFieldDto {
+    private String id = "1";
+  }
+
+  @SnapshotSerializable
+  static class HidingFieldDto extends Base {
+    String baseId = "hiding";
+  }
+
+  static class PlainDto extends Base {
+    static String ignoredStatic = "static";
+    private String id = "1";
+
+    @JsonProperty("renamed")
+    int count = 2;
+
+    private transient String ignoredTransient = "transient";
+    @JsonIgnore private String ignored = "ignored";
+    private String missing = null;
+    private List<String> tags = Arrays.asList("a", "b");
+    private FakeObject fakeObject = FakeObject.builder().id("fake").value(3).build();
+  }
+
+  @Test
+  void shouldGenerateSerializerForAnnotatedClass() throws ClassNotFoundException {
+    assertThat(
+            SnapshotSerializer.class.isAssignableFrom(
+                Class.forName(
+                    "io.github.jsonSnapshot.SnapshotSerializerTest_AnnotatedDto_SnapshotSerializer")))
+        .isTrue();
+  }
+
+  @Test
+  void shouldUseGeneratedSerializerInDefaultJsonFunction() throws JsonMappingException {
+    ObjectMapper objectMapper =
+        ((DefaultJsonFunction) SnapshotMatcher.defaultJsonFunction()).getObjectMapper();
+
+    assertThat(
+            objectMapper
+                .getSerializerProviderInstance()
+                .findValueSerializer(AnnotatedDto.class)
+                .getClass()
+                .getName())
+        .isEqualTo("io.github.jsonSnapshot.SnapshotSerializerTest_AnnotatedDto_SnapshotSerializer");
+    assertThat(objectMapper.getSerializerProviderInstance().findValueSerializer(OrderedDto.class))
+        .isNotInstanceOf(SnapshotSerializer.class);
+  }
+
+  @Test
+  void shouldNotGenerateSerializerForUnsupportedClasses() {
+    assertThrows(
+        ClassNotFoundException.class,
+        () ->
+            Class.forName(
+                "io.github.jsonSnapshot.SnapshotSerializerTest_OrderedDto_SnapshotSerializer"));
+    assertThrows(
+        ClassNotFoundException.class,
+        () ->
+            Class.forName(
+                "io.github.jsonSnapshot.SnapshotSerializerTest_PrivateFieldDto_SnapshotSerializer"));
+    assertThrows(
+        ClassNotFoundException.class,
+        () ->
+            Class.forName(
+                "io.github.jsonSnapshot.SnapshotSerializerTest_HidingFieldDto_SnapshotSerializer"));
+  }
+
+  @Test
+  void shouldWriteSameJsonAsReflection() {
+    Function<Object, String> jsonFunction = SnapshotMatcher.defaultJsonFunction();
+
+    String generated = jsonFunction.apply(new Object[] {new AnnotatedDto()});
+
+    assertThat(generated).isEqualTo(jsonFunction.apply(new Object[] {new PlainDto()}));
+    assertThat(generated)
+        .contains("\"baseId\": \"base\"")
+        .contains("\"renamed\": 2")
+        .doesNotContain("missing")
+        .doesNotContain("ignored");
+  }
+}
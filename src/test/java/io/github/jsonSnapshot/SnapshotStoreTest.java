@@ -0,0 +1,95 @@
+package io.github.jsonSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotStoreTest {
+
+  private static final String FILE_NAME = "a/FooTest.snap";
+
+  @Test
+  void inMemoryStore_keepsSnapshotsAndPayloads() throws IOException {
+    InMemorySnapshotStore store = new InMemorySnapshotStore();
+
+    new SnapshotFile(store, FILE_NAME, SnapshotFileOptions.DEFAULT.withDeduplicate(true))
+        .push(new SnapshotDataItem("a.Foo.test", "[1]"));
+
+    SnapshotFile reloaded = new SnapshotFile(store, FILE_NAME, SnapshotFileOptions.DEFAULT);
+    assertThat(reloaded.getStoredSnapshots().getItemByName("a.Foo.test").get().getData())
+        .isEqualTo("[1]");
+    assertThat(new String(store.load(FILE_NAME).get(), StandardCharsets.UTF_8))
+        .contains("@record a.Foo.test ")
+        .contains("\n" + SnapshotPayloads.REFERENCE_PREFIX);
+  }
+
+  @Test
+  void zipStore_writesOneArchiveOnFlushAndMergesOtherWriters() throws IOException {
+    Path dir = Files.createTempDirectory("snapshotStoreTest");
+    Path archive = dir.resolve("snapshots.zip");
+    try {
+      ZipSnapshotStore first = new ZipSnapshotStore(archive);
+      ZipSnapshotStore second = new ZipSnapshotStore(archive);
+      SnapshotFile firstFile = new SnapshotFile(first, FILE_NAME, SnapshotFileOptions.DEFAULT);
+      SnapshotFile secondFile = new SnapshotFile(second, FILE_NAME, SnapshotFileOptions.DEFAULT);
+
+      firstFile.push(new SnapshotDataItem("a.Foo.first", "[1]"));
+      assertThat(archive).doesNotExist();
+      firstFile.flush();
+      secondFile.push(new SnapshotDataItem("a.Foo.second", "[2]"));
+      new SnapshotFile(second, "a/BarTest.snap", SnapshotFileOptions.DEFAULT)
+          .push(new SnapshotDataItem("a.Bar.test", "[3]"));
+      second.flush();
+
+      try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+        assertThat(zipFile.size()).isEqualTo(2);
+      }
+      SnapshotData reloaded =
+          new SnapshotFile(new ZipSnapshotStore(archive), FILE_NAME, SnapshotFileOptions.DEFAULT)
+              .getStoredSnapshots();
+      assertThat(reloaded.getItems())
+          .extracting(SnapshotDataItem::getName)
+          .containsExactly("a.Foo.first", "a.Foo.second");
+    } finally {
+      Files.deleteIfExists(archive);
+      Files.deleteIfExists(dir.resolve("snapshots.zip.lock"));
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  void zipStore_appliesLatestMergeOfEachFileOnFlush() throws IOException {
+    Path dir = Files.createTempDirectory("snapshotStoreTest");
+    Path archive = dir.resolve("snapshots.zip");
+    try {
+      ZipSnapshotStore store = new ZipSnapshotStore(archive);
+      SnapshotFile file =
+          new SnapshotFile(store, FILE_NAME, SnapshotFileOptions.DEFAULT.withWriteActual(true));
+      file.writeActual(new SnapshotDataItem("a.Foo.first", "[1]"));
+      file.writeActual(new SnapshotDataItem("a.Foo.second", "[2]"));
+      file.push(new SnapshotDataItem("a.Foo.third", "[3]"));
+      file.flush();
+
+      SnapshotFile reloaded =
+          new SnapshotFile(new ZipSnapshotStore(archive), FILE_NAME, SnapshotFileOptions.DEFAULT);
+      assertThat(reloaded.getStoredSnapshots().getItems())
+          .extracting(SnapshotDataItem::getName)
+          .containsExactly("a.Foo.third");
+      assertThat(
+              new String(
+                  new ZipSnapshotStore(archive).load(FILE_NAME + ".actual").get(),
+                  StandardCharsets.UTF_8))
+          .isEqualTo(SnapshotFiles.content("a.Foo.first", "[1]", "a.Foo.second", "[2]"));
+    } finally {
+      Files.deleteIfExists(archive);
+      Files.deleteIfExists(dir.resolve("snapshots.zip.lock"));
+      Files.delete(dir);
+    }
+  }
+}
@@ -4,8 +4,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +16,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import io.github.jsonSnapshot.matchingstrategy.JSONAssertMatchingStrategy;
 import io.github.jsonSnapshot.matchingstrategy.StringEqualsMatchingStrategy;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,7 +25,8 @@ class SnapshotTest {
   private static final SnapshotConfig DEFAULT_CONFIG = new DefaultConfig();
   private static final String FILE_PATH = "src/test/java/anyFilePath";
   private static final String SNAPSHOT_NAME = "java.lang.String.toString";
-  private static final String SNAPSHOT = "java.lang.String.toString=[\n  \"anyObject\"\n]";
+  private static final String SNAPSHOT =
+      SnapshotFiles.content(SNAPSHOT_NAME, "[\n  \"anyObject\"\n]");
 
   private SnapshotFile snapshotFile;
 
@@ -42,7 +47,7 @@ class SnapshotTest {
 
   @AfterEach
   void tearDown() throws IOException {
-    Files.delete(Paths.get(FILE_PATH));
+    Files.deleteIfExists(Paths.get(FILE_PATH));
   }
 
   @Test
@@ -64,6 +69,163 @@ class SnapshotTest {
         .containsExactly(SNAPSHOT_NAME, "[\n  \"anyObject\"\n]");
   }
 
+  @Test
+  void shouldReleaseArgumentsOnceMatched() throws NoSuchMethodException, InterruptedException {
+    Object argument = new Object[] {"anyObject"};
+    WeakReference<Object> released = new WeakReference<>(argument);
+    Snapshot withArgument =
+        new Snapshot(
+            snapshotFile,
+            String.class,
+            String.class.getDeclaredMethod("toString"),
+            SnapshotMatcher.defaultJsonFunction(),
+            StringEqualsMatchingStrategy.INSTANCE,
+            argument);
+    argument = null;
+
+    withArgument.toMatchSnapshot();
+
+    for (int i = 0; i < 50 && released.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(released.get()).isNull();
+    assertThrows(SnapshotMatchException.class, withArgument::toMatchSnapshot);
+  }
+
+  @Test
+  void shouldStoreDigestAndDumpActualOutputOnMismatch() throws NoSuchMethodException, IOException {
+    String json =
+        SnapshotMatcher.defaultJsonFunction().apply(new Object[] {Arrays.asList("a", "b")});
+    String expectedDigest =
+        "@digest:sha256="
+            + SnapshotPayloads.hash(json.getBytes(StandardCharsets.UTF_8))
+            + " bytes="
+            + json.length()
+            + " elements=2";
+
+    newSnapshot(Arrays.asList("a", "b")).asDigest().toMatchSnapshot();
+    newSnapshot(Arrays.asList("a", "b")).asDigest().toMatchSnapshot();
+
+    assertThat(new String(Files.readAllBytes(Paths.get(FILE_PATH)), StandardCharsets.UTF_8))
+        .isEqualTo(SnapshotFiles.content(SNAPSHOT_NAME, expectedDigest));
+    assertThat(
+            new SnapshotFile(DEFAULT_CONFIG.getFilePath(), "anyFilePath")
+                .getStoredSnapshots()
+                .getItemByName(SNAPSHOT_NAME)
+                .get()
+                .getData())
+        .isEqualTo(expectedDigest);
+    SnapshotMatchException e =
+        assertThrows(
+            SnapshotMatchException.class,
+            () -> newSnapshot(Arrays.asList("a", "c")).asDigest(true).toMatchSnapshot());
+    assertThat(e.getMessage()).contains("expected " + expectedDigest);
+    String dump = FILE_PATH + ".actual";
+    assertThat(e.getMessage()).endsWith("actual output written to " + dump);
+    snapshotFile.flush();
+    try {
+      assertThat(new String(Files.readAllBytes(Paths.get(dump)), StandardCharsets.UTF_8))
+          .isEqualTo(
+              SnapshotFiles.content(
+                  SNAPSHOT_NAME,
+                  SnapshotMatcher.defaultJsonFunction()
+                      .apply(new Object[] {Arrays.asList("a", "c")})));
+    } finally {
+      Files.delete(Paths.get(dump));
+    }
+  }
+
+  @Test
+  void shouldWriteActualSnapshotAndPreviewLargeMismatch()
+      throws NoSuchMethodException, IOException {
+    InMemorySnapshotStore store = new InMemorySnapshotStore();
+    SnapshotFile writingActual =
+        new SnapshotFile(store, "anyFilePath", SnapshotFileOptions.DEFAULT.withWriteActual(true));
+    writingActual.push(new SnapshotDataItem(SNAPSHOT_NAME, "[\"anyWrongObject\"]"));
+    char[] large = new char[2 * Snapshot.MISMATCH_PREVIEW_LENGTH];
+    Arrays.fill(large, 'x');
+
+    SnapshotMatchException e =
+        assertThrows(
+            SnapshotMatchException.class,
+            () -> newSnapshot(writingActual, new String(large)).toMatchSnapshot());
+
+    assertThat(e.getMessage().length()).isLessThan(3 * Snapshot.MISMATCH_PREVIEW_LENGTH);
+    assertThat(e.getMessage())
+        .contains("more characters)")
+        .endsWith("Actual snapshot written to anyFilePath.actual");
+    writingActual.flush();
+    assertThat(new String(store.load("anyFilePath.actual").get(), StandardCharsets.UTF_8))
+        .isEqualTo(
+            SnapshotFiles.content(
+                SNAPSHOT_NAME,
+                SnapshotMatcher.defaultJsonFunction().apply(new Object[] {new String(large)})));
+  }
+
+  @Test
+  void shouldDropActualSnapshotOnceMatchedAgain() throws NoSuchMethodException, IOException {
+    InMemorySnapshotStore store = new InMemorySnapshotStore();
+    SnapshotFile writingActual =
+        new SnapshotFile(store, "anyFilePath", SnapshotFileOptions.DEFAULT.withWriteActual(true));
+    writingActual.push(new SnapshotDataItem(SNAPSHOT_NAME, "[\n  \"anyObject\"\n]"));
+
+    assertThrows(
+        SnapshotMatchException.class,
+        () -> newSnapshot(writingActual, "anyWrongObject").toMatchSnapshot());
+    writingActual.flush();
+    assertThat(new String(store.load("anyFilePath.actual").get(), StandardCharsets.UTF_8))
+        .isEqualTo(SnapshotFiles.content(SNAPSHOT_NAME, "[\n  \"anyWrongObject\"\n]"));
+
+    newSnapshot(writingActual, "anyObject").toMatchSnapshot();
+    writingActual.flush();
+    assertThat(new String(store.load("anyFilePath.actual").get(), StandardCharsets.UTF_8))
+        .isEqualTo(SnapshotFiles.content());
+  }
+
+  @Test
+  void shouldWriteActualSnapshotOfJsonAssertMismatch() throws NoSuchMethodException, IOException {
+    InMemorySnapshotStore store = new InMemorySnapshotStore();
+    SnapshotFile writingActual =
+        new SnapshotFile(store, "anyFilePath", SnapshotFileOptions.DEFAULT.withWriteActual(true));
+    writingActual.push(new SnapshotDataItem(SNAPSHOT_NAME, "[\"anyWrongObject\"]"));
+    char[] large = new char[2 * Snapshot.MISMATCH_PREVIEW_LENGTH];
+    Arrays.fill(large, 'x');
+
+    SnapshotMatchException e =
+        assertThrows(
+            SnapshotMatchException.class,
+            () ->
+                new Snapshot(
+                        writingActual,
+                        String.class,
+                        String.class.getDeclaredMethod("toString"),
+                        SnapshotMatcher.defaultJsonFunction(),
+                        JSONAssertMatchingStrategy.INSTANCE_LENIENT,
+                        new String(large))
+                    .toMatchSnapshot());
+
+    assertThat(e.getMessage().length()).isLessThan(3 * Snapshot.MISMATCH_PREVIEW_LENGTH);
+    assertThat(e.getMessage()).endsWith("Actual snapshot written to anyFilePath.actual");
+    writingActual.flush();
+    assertThat(store.load("anyFilePath.actual")).isPresent();
+  }
+
+  private Snapshot newSnapshot(Object object) throws NoSuchMethodException {
+    return newSnapshot(snapshotFile, object);
+  }
+
+  private Snapshot newSnapshot(SnapshotFile snapshotFile, Object object)
+      throws NoSuchMethodException {
+    return new Snapshot(
+        snapshotFile,
+        String.class,
+        String.class.getDeclaredMethod("toString"),
+        SnapshotMatcher.defaultJsonFunction(),
+        StringEqualsMatchingStrategy.INSTANCE,
+        object);
+  }
+
   @Test
   void shouldMatchSnapshotWithException() {
 
@@ -71,4 +233,110 @@ class SnapshotTest {
 
     assertThrows(SnapshotMatchException.class, snapshot::toMatchSnapshot);
   }
+
+  @Test
+  void shouldUpdateSnapshotInUpdateModeAndWriteOnFlush() throws NoSuchMethodException, IOException {
+    snapshotFile.push(new SnapshotDataItem(SNAPSHOT_NAME, "[\"anyWrongObject\"]"));
+
+    SnapshotFile updatingFile =
+        new SnapshotFile(
+            new FileSystemSnapshotStore(DEFAULT_CONFIG.getFilePath()),
+            "anyFilePath",
+            SnapshotFileOptions.DEFAULT.withUpdateMode(true));
+    new Snapshot(
+            updatingFile,
+            String.class,
+            String.class.getDeclaredMethod("toString"),
+            SnapshotMatcher.defaultJsonFunction(),
+            StringEqualsMatchingStrategy.INSTANCE,
+            "anyObject")
+        .toMatchSnapshot();
+
+    assertThat(new String(Files.readAllBytes(Paths.get(FILE_PATH)), StandardCharsets.UTF_8))
+        .isEqualTo(SnapshotFiles.content(SNAPSHOT_NAME, "[\"anyWrongObject\"]"));
+
+    updatingFile.flush();
+
+    assertThat(new String(Files.readAllBytes(Paths.get(FILE_PATH)), StandardCharsets.UTF_8))
+        .isEqualTo(SNAPSHOT);
+  }
+
+  @Test
+  void shouldWriteDeferredSnapshotsOfAbandonedSession() throws IOException {
+    InMemorySnapshotStore store = new InMemorySnapshotStore();
+    SnapshotFile deferringFile =
+        new SnapshotFile(store, "anyFilePath", SnapshotFileOptions.DEFAULT);
+    SnapshotSession session =
+        new SnapshotSession(
+            String.class,
+            deferringFile,
+            SnapshotMatcher.defaultJsonFunction(),
+            StringEqualsMatchingStrategy.INSTANCE);
+    deferringFile.pushDeferred(new SnapshotDataItem(SNAPSHOT_NAME, "[\"anyObject\"]"));
+    assertThat(store.load("anyFilePath")).isEmpty();
+
+    session.closeAbandoned("the test has finished");
+
+    assertThat(new String(store.load("anyFilePath").get(), StandardCharsets.UTF_8))
+        .isEqualTo(SnapshotFiles.content(SNAPSHOT_NAME, "[\"anyObject\"]"));
+    assertThat(deferringFile.hasUnwrittenSnapshots()).isFalse();
+  }
+
+  @Test
+  void shouldMatchBatchAndCreateMissingEntriesWithException() throws NoSuchMethodException {
+    snapshotFile.push(new SnapshotDataItem(SNAPSHOT_NAME + "[first]", "[\"anyWrongObject\"]"));
+
+    SnapshotBatch batch =
+        new SnapshotBatch(
+            Arrays.asList(
+                batchSnapshot("first", "anyObject"), batchSnapshot("second", "anyOtherObject")));
+
+    SnapshotMatchException exception =
+        assertThrows(SnapshotMatchException.class, batch::toMatchSnapshot);
+    assertThat(exception.getMessage())
+        .startsWith("1 of 2 snapshots did not match:\n" + SNAPSHOT_NAME + "[first]");
+    assertThat(snapshotFile.getStoredSnapshots().getItemByName(SNAPSHOT_NAME + "[second]"))
+        .hasValueSatisfying(
+            item -> assertThat(item.getData()).isEqualTo("[\n  \"anyOtherObject\"\n]"));
+  }
+
+  @Test
+  void shouldWriteActualSnapshotOfMismatchingBatchEntry()
+      throws NoSuchMethodException, IOException {
+    InMemorySnapshotStore store = new InMemorySnapshotStore();
+    SnapshotFile writingActual =
+        new SnapshotFile(store, "anyFilePath", SnapshotFileOptions.DEFAULT.withWriteActual(true));
+    writingActual.push(new SnapshotDataItem(SNAPSHOT_NAME + "[first]", "[\"anyWrongObject\"]"));
+    writingActual.push(
+        new SnapshotDataItem(SNAPSHOT_NAME + "[second]", "[\n  \"anyOtherObject\"\n]"));
+
+    SnapshotBatch batch =
+        new SnapshotBatch(
+            Arrays.asList(
+                batchSnapshot(writingActual, "first", "anyObject"),
+                batchSnapshot(writingActual, "second", "anyOtherObject")));
+
+    SnapshotMatchException exception =
+        assertThrows(SnapshotMatchException.class, batch::toMatchSnapshot);
+    assertThat(exception.getMessage()).endsWith("Actual snapshot written to anyFilePath.actual");
+    writingActual.flush();
+    assertThat(new String(store.load("anyFilePath.actual").get(), StandardCharsets.UTF_8))
+        .isEqualTo(SnapshotFiles.content(SNAPSHOT_NAME + "[first]", "[\n  \"anyObject\"\n]"));
+  }
+
+  private Snapshot batchSnapshot(String key, Object object) throws NoSuchMethodException {
+    return batchSnapshot(snapshotFile, key, object);
+  }
+
+  private Snapshot batchSnapshot(SnapshotFile snapshotFile, String key, Object object)
+      throws NoSuchMethodException {
+    return new Snapshot(
+        snapshotFile,
+        String.class,
+        String.class.getDeclaredMethod("toString"),
+        key,
+        SnapshotMatcher.defaultJsonFunction(),
+        StringEqualsMatchingStrategy.INSTANCE,
+        object);
+  }
 }
@@ -1,10 +1,13 @@
 package io.github.jsonSnapshot;
 
 import static io.github.jsonSnapshot.SnapshotMatcher.*;
+import static io.github.jsonSnapshot.SnapshotUtils.extractAllArgs;
 import static io.github.jsonSnapshot.SnapshotUtils.extractArgs;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -95,4 +98,27 @@ class SnapshotUtilsTest {
     expect(fakeMethodWithComplexObjectWithIgnore, fakeMethodWithComplexObjectWithoutIgnore)
         .toMatchSnapshot();
   }
+
+  @Test
+  void shouldExtractAllArgsFromFakeObject() {
+    FakeObject fake = new FakeObject.FakeObjectBuilder().id("idMock").name("nameMock").build();
+
+    fakeObject.fakeMethod("test1", 1L, Arrays.asList("listTest1"));
+    fakeObject.fakeMethodWithComplexFakeObject(fake);
+    fakeObject.fakeMethod("test2", 2L, Arrays.asList("listTest1", "listTest2"));
+
+    Map<String, SnapshotCaptor[]> methodCaptors = new LinkedHashMap<>();
+    methodCaptors.put(
+        "fakeMethod",
+        new SnapshotCaptor[] {
+          new SnapshotCaptor(String.class),
+          new SnapshotCaptor(Long.class),
+          new SnapshotCaptor(List.class)
+        });
+    methodCaptors.put(
+        "fakeMethodWithComplexFakeObject",
+        new SnapshotCaptor[] {new SnapshotCaptor(FakeObject.class, "name")});
+
+    expect(extractAllArgs(fakeObject, methodCaptors)).toMatchSnapshot();
+  }
 }
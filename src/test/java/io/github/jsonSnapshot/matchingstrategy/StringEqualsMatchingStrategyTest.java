@@ -0,0 +1,33 @@
+package io.github.jsonSnapshot.matchingstrategy;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.jsonSnapshot.SnapshotDataItem;
+import io.github.jsonSnapshot.SnapshotMatchException;
+
+class StringEqualsMatchingStrategyTest {
+
+  private static final SnapshotDataItem STORED =
+      new SnapshotDataItem("anyName", "[\r\n  \"line1\",\r  \"line2\"\n]");
+
+  @Test
+  void shouldMatchIgnoringLineBreaksAndSurroundingWhitespace() {
+    StringEqualsMatchingStrategy.INSTANCE.match(STORED, "[\n  \"line1\",\n  \"line2\"\n]");
+    StringEqualsMatchingStrategy.INSTANCE.match(
+        STORED, " \n[\r\n  \"line1\",\r\n  \"line2\"\r]\r\n");
+  }
+
+  @Test
+  void shouldNotMatchDifferentContent() {
+    assertThrows(
+        SnapshotMatchException.class,
+        () -> StringEqualsMatchingStrategy.INSTANCE.match(STORED, "[\n  \"line1\"\n]"));
+    assertThrows(
+        SnapshotMatchException.class,
+        () ->
+            StringEqualsMatchingStrategy.INSTANCE.match(
+                STORED, "[\n  \"line1\",\n  \"line2\"\n]\n]"));
+  }
+}